@@ -0,0 +1,214 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Resources;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * just enough of a Context for the benchmarked classes: in memory shared
+ * preferences, a temp dir and resources that resolve a fixed set of names.
+ */
+final class BenchmarkContext extends ContextWrapper {
+
+    private final Map<String, Prefs> prefs = new HashMap<>();
+    private final Map<String, Integer> identifiers = new HashMap<>();
+    private final ApplicationInfo applicationInfo = new ApplicationInfo();
+    private final File dir;
+    private Resources resources;
+
+    BenchmarkContext() {
+        super(null);
+        try {
+            dir = Files.createTempDirectory("rnmopushnotification").toFile();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        applicationInfo.icon = 1;
+    }
+
+    void addResource(String type, String name, int id) {
+        identifiers.put(type + "/" + name, id);
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public String getPackageName() {
+        return "de.mxs.benchmark";
+    }
+
+    @Override
+    public ApplicationInfo getApplicationInfo() {
+        return applicationInfo;
+    }
+
+    @Override
+    public File getNoBackupFilesDir() {
+        return dir;
+    }
+
+    @Override
+    public synchronized Resources getResources() {
+        if (resources == null) {
+            resources = new Resources(null) {
+                @Override
+                public int getIdentifier(String name, String defType, String defPackage) {
+                    Integer id = identifiers.get(defType + "/" + name);
+                    return id != null ? id : 0;
+                }
+            };
+        }
+        return resources;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        Prefs res = prefs.get(name);
+        if (res == null) {
+            res = new Prefs();
+            prefs.put(name, res);
+        }
+        return res;
+    }
+
+    private static final class Prefs implements SharedPreferences {
+
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public synchronized String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String)values.get(key) : defValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>)values.get(key) : defValues;
+        }
+
+        @Override
+        public synchronized int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer)values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long)values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float)values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean)values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            Map<String, Object> changes = new HashMap<>();
+            return new Editor() {
+                @Override
+                public Editor putString(String key, String value) {
+                    changes.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String key, Set<String> values) {
+                    changes.put(key, values);
+                    return this;
+                }
+
+                @Override
+                public Editor putInt(String key, int value) {
+                    changes.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(String key, long value) {
+                    changes.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(String key, float value) {
+                    changes.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(String key, boolean value) {
+                    changes.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor remove(String key) {
+                    changes.put(key, null);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    synchronized (Prefs.this) {
+                        values.clear();
+                    }
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    synchronized (Prefs.this) {
+                        for (Map.Entry<String, Object> entry : changes.entrySet()) {
+                            if (entry.getValue() == null) {
+                                values.remove(entry.getKey());
+                            } else {
+                                values.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                    commit();
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package de.mxs.reactnativemopushnotification;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the data of onMessageReceived, key by key or with the data json mode
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FcmDataBenchmark {
+
+    @Param({ "off", "payload", "all" })
+    public String dataJson;
+
+    private BenchmarkContext context;
+    private Map<String, String> fcmData;
+
+    @Setup
+    public void setup() {
+        context = new BenchmarkContext();
+        fcmData = Payloads.fcmData();
+        PayloadConverter.setDataJsonMode(context, dataJson.equals("all"),
+            dataJson.equals("off") ? Collections.emptyList() : Arrays.asList("payload"));
+    }
+
+    @Benchmark
+    public WritableMap putData() {
+        WritableMap args = new JavaOnlyMap();
+        PayloadConverter.putData(context, args, fcmData);
+        return args;
+    }
+
+}
@@ -0,0 +1,60 @@
+package de.mxs.reactnativemopushnotification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id allocation and cached resource lookups, single threaded and under
+ * contention
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    private BenchmarkContext context;
+
+    @Setup
+    public void setup() {
+        context = new BenchmarkContext();
+        context.addResource("drawable", "ic_notification", 10);
+        context.addResource("mipmap", "ic_launcher", 12);
+        ResourceCache.getIcon(context, "ic_notification");
+    }
+
+    @Benchmark
+    public int nextNotificationID() {
+        return IdAllocator.nextNotificationID(context);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int nextNotificationIDContended() {
+        return IdAllocator.nextNotificationID(context);
+    }
+
+    @Benchmark
+    public int nextRequestCode() {
+        return IdAllocator.nextRequestCode(context);
+    }
+
+    @Benchmark
+    public int getIcon() {
+        return ResourceCache.getIcon(context, "ic_notification");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int getIconContended() {
+        return ResourceCache.getIcon(context, "ic_notification");
+    }
+
+}
@@ -0,0 +1,102 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.os.Bundle;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * conversions that run once per message / notification
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PayloadConversionBenchmark {
+
+    private BenchmarkContext context;
+    private Bundle extras;
+    private JavaOnlyMap notification;
+    private byte[] encodedPayload;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+    @Setup
+    public void setup() throws IOException {
+        context = new BenchmarkContext();
+        context.addResource("drawable", "ic_notification", 10);
+        context.addResource("drawable", "ic_reply", 11);
+        context.addResource("mipmap", "ic_launcher", 12);
+        extras = Payloads.extras();
+        notification = Payloads.notification();
+        encodedPayload = encode(PayloadStore.createPayload(notification, "messages", PayloadConverter.toBundle(notification.getMap("data"))));
+    }
+
+    private byte[] encode(Bundle bundle) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        BundleCodec.writeBundle(out, bundle);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * onNotificationIntent / getDeliveredNotifications, reserved keys skipped
+     */
+    @Benchmark
+    public WritableMap extrasToMap() {
+        return PayloadConverter.toWritableMap(extras, true);
+    }
+
+    /**
+     * the data of a local notification, js to bundle
+     */
+    @Benchmark
+    public Bundle notificationDataToBundle() {
+        return PayloadConverter.toBundle(notification.getMap("data"));
+    }
+
+    /**
+     * everything NotificationPoster does for a notification with actions
+     * besides the framework calls: icon lookups, data conversion, the click
+     * payload and its encoding for the PayloadStore file
+     */
+    @Benchmark
+    public byte[] notificationArgs() throws IOException {
+        int icon = ResourceCache.getIcon(context, notification.getString("smallIcon"));
+        ReadableArray actions = notification.getArray("actions");
+        for (int i=0; i<actions.size(); i++) {
+            ReadableMap action = actions.getMap(i);
+            icon += ResourceCache.getIcon(context, action.hasKey("icon") ? action.getString("icon") : null);
+        }
+        Bundle data = PayloadConverter.toBundle(notification.getMap("data"));
+        Bundle payload = PayloadStore.createPayload(notification, "messages", data);
+        payload.putInt("icon", icon);
+        return encode(payload);
+    }
+
+    /**
+     * reading a payload back when a notification is clicked
+     */
+    @Benchmark
+    public WritableMap decodePayload() throws IOException {
+        Bundle payload = BundleCodec.readBundle(new DataInputStream(new ByteArrayInputStream(encodedPayload)));
+        return PayloadConverter.toWritableMap(payload.getBundle("data"));
+    }
+
+}
@@ -0,0 +1,86 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.os.Bundle;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * representative payloads: a message with 20 data fields, one of them a
+ * 2-3 KB json string, and a local notification with actions.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static String json() {
+        StringBuilder res = new StringBuilder("{\"items\":[");
+        for (int i=0; i<24; i++) {
+            if (i > 0) res.append(',');
+            res.append("{\"id\":").append(i).append(",\"title\":\"item number ").append(i)
+                .append("\",\"url\":\"https://example.com/items/").append(i).append("\",\"seen\":false}");
+        }
+        return res.append("]}").toString();
+    }
+
+    static Map<String, String> fcmData() {
+        Map<String, String> res = new HashMap<>();
+        for (int i=0; i<19; i++) {
+            res.put("key" + i, "value number " + i);
+        }
+        res.put("payload", json());
+        return res;
+    }
+
+    /**
+     * intent / notification extras as fcm delivers them
+     */
+    static Bundle extras() {
+        Bundle res = new Bundle();
+        for (Map.Entry<String, String> entry : fcmData().entrySet()) {
+            res.putString(entry.getKey(), entry.getValue());
+        }
+        res.putString("from", "123456789");
+        res.putString("collapse_key", "de.mxs.benchmark");
+        res.putString("google.message_id", "0:1234567890%abcdef");
+        res.putLong("google.sent_time", 1700000000000L);
+        res.putInt("google.ttl", 2419200);
+        res.putString("google.original_priority", "high");
+        res.putString("android.title", "title");
+        res.putString("android.text", "body");
+        return res;
+    }
+
+    static JavaOnlyMap data() {
+        return JavaOnlyMap.of(
+            "conversation", "c-1234",
+            "sender", JavaOnlyMap.of("id", 17, "name", "someone", "verified", true),
+            "recipients", JavaOnlyArray.of("a", "b", "c", "d"),
+            "unread", 3,
+            "payload", json()
+        );
+    }
+
+    static JavaOnlyMap notification() {
+        return JavaOnlyMap.of(
+            "channelID", "messages",
+            "title", "New message",
+            "body", "someone: hello there, this is a somewhat longer message body",
+            "subtext", "chat",
+            "smallIcon", "ic_notification",
+            "color", 0xff2196f3,
+            "number", 3,
+            "groupKey", "c-1234",
+            "actions", JavaOnlyArray.of(
+                JavaOnlyMap.of("id", "reply", "title", "Reply", "icon", "ic_reply", "background", true),
+                JavaOnlyMap.of("id", "read", "title", "Mark as read", "background", true)
+            ),
+            "data", data()
+        );
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.facebook.react.bridge;
+
+import java.lang.reflect.Array;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle. the real
+ * one creates native maps, these are plain java.
+ */
+public class Arguments {
+
+    public static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    public static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+
+    public static WritableArray fromArray(Object array) {
+        WritableArray res = createArray();
+        for (int i=0; i<Array.getLength(array); i++) {
+            Object value = Array.get(array, i);
+            if (value == null) {
+                res.pushNull();
+            } else if (value instanceof String) {
+                res.pushString((String)value);
+            } else if (value instanceof Boolean) {
+                res.pushBoolean((Boolean)value);
+            } else if (value instanceof Number) {
+                res.pushDouble(((Number)value).doubleValue());
+            } else {
+                throw new IllegalArgumentException("unknown array type " + value.getClass());
+            }
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.facebook.react.bridge;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle.
+ * like the real one values are kept in a HashMap, numbers as Double.
+ */
+public class JavaOnlyMap implements WritableMap {
+
+    private final Map<String, Object> backingMap = new HashMap<>();
+
+    public static JavaOnlyMap of(Object... keysAndValues) {
+        JavaOnlyMap res = new JavaOnlyMap();
+        for (int i=0; i<keysAndValues.length; i+=2) {
+            Object value = keysAndValues[i + 1];
+            if (value instanceof Number) value = ((Number)value).doubleValue();
+            res.backingMap.put((String)keysAndValues[i], value);
+        }
+        return res;
+    }
+
+    @Override
+    public boolean hasKey(String name) {
+        return backingMap.containsKey(name);
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return backingMap.get(name) == null;
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return (Boolean)backingMap.get(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return ((Number)backingMap.get(name)).doubleValue();
+    }
+
+    @Override
+    public int getInt(String name) {
+        return ((Number)backingMap.get(name)).intValue();
+    }
+
+    @Override
+    public String getString(String name) {
+        return (String)backingMap.get(name);
+    }
+
+    @Override
+    public ReadableArray getArray(String name) {
+        return (ReadableArray)backingMap.get(name);
+    }
+
+    @Override
+    public ReadableMap getMap(String name) {
+        return (ReadableMap)backingMap.get(name);
+    }
+
+    @Override
+    public ReadableType getType(String name) {
+        return JavaOnlyArray.typeOf(backingMap.get(name));
+    }
+
+    @Override
+    public ReadableMapKeySetIterator keySetIterator() {
+        Iterator<String> it = backingMap.keySet().iterator();
+        return new ReadableMapKeySetIterator() {
+            @Override
+            public boolean hasNextKey() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String nextKey() {
+                return it.next();
+            }
+        };
+    }
+
+    @Override
+    public void putNull(String key) {
+        backingMap.put(key, null);
+    }
+
+    @Override
+    public void putBoolean(String key, boolean value) {
+        backingMap.put(key, value);
+    }
+
+    @Override
+    public void putDouble(String key, double value) {
+        backingMap.put(key, value);
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+        backingMap.put(key, (double)value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        backingMap.put(key, value);
+    }
+
+    @Override
+    public void putArray(String key, ReadableArray value) {
+        backingMap.put(key, value);
+    }
+
+    @Override
+    public void putMap(String key, ReadableMap value) {
+        backingMap.put(key, value);
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.facebook.react.bridge;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle
+ */
+public interface ReadableArray {
+    int size();
+    boolean isNull(int index);
+    boolean getBoolean(int index);
+    double getDouble(int index);
+    int getInt(int index);
+    String getString(int index);
+    ReadableArray getArray(int index);
+    ReadableMap getMap(int index);
+    ReadableType getType(int index);
+}
@@ -0,0 +1,9 @@
+package com.facebook.react.bridge;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle
+ */
+public interface ReadableMapKeySetIterator {
+    boolean hasNextKey();
+    String nextKey();
+}
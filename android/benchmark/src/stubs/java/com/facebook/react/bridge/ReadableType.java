@@ -0,0 +1,13 @@
+package com.facebook.react.bridge;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle
+ */
+public enum ReadableType {
+    Null,
+    Boolean,
+    Number,
+    String,
+    Map,
+    Array,
+}
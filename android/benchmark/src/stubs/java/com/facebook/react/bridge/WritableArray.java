@@ -0,0 +1,14 @@
+package com.facebook.react.bridge;
+
+/**
+ * stand-in for the react native bridge type, see build.gradle
+ */
+public interface WritableArray extends ReadableArray {
+    void pushNull();
+    void pushBoolean(boolean value);
+    void pushDouble(double value);
+    void pushInt(int value);
+    void pushString(String value);
+    void pushArray(ReadableArray array);
+    void pushMap(ReadableMap map);
+}
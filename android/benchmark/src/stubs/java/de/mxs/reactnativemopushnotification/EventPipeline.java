@@ -0,0 +1,20 @@
+package de.mxs.reactnativemopushnotification;
+
+/**
+ * stand-in for the pipeline thread, there is no looper on a plain jvm.
+ * runs everything on the calling thread.
+ */
+final class EventPipeline {
+
+    private EventPipeline() {
+    }
+
+    static boolean isPipelineThread() {
+        return true;
+    }
+
+    static void post(Runnable runnable) {
+        runnable.run();
+    }
+
+}
@@ -0,0 +1,10 @@
+package de.mxs.reactnativemopushnotification;
+
+/**
+ * stand-in for the module, only the flags the benchmarked classes read
+ */
+public class ReactNativeMoPushNotification {
+
+    static boolean verbose = false;
+
+}
@@ -0,0 +1,263 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * images for largeIcon and bigPicture, from a file path, a file:// or
+ * content:// uri, or a drawable / mipmap resource name. images are decoded
+ * with a sample size close to the target size and then scaled to fit it.
+ *
+ * decoded bitmaps are kept in an LruCache bounded by bytes. scaled images
+ * are also written to a small disk cache (in the cache dir, bounded by
+ * bytes, oldest first out), so an avatar used for many notifications is
+ * decoded from the original once, also across process restarts. keys of
+ * files include their modification time.
+ *
+ * decoding happens on the calling thread, which is never the main thread
+ * for notifications posted by this module.
+ */
+final class BitmapCache {
+
+    private static final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_BIG_PICTURE_WIDTH = 1024;
+
+    private static final LruCache<String, Bitmap> memory = new LruCache<String, Bitmap>(
+        (int)Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 32)
+    ) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    private static File dir;
+    private static long diskBytes = -1;
+
+    private BitmapCache() {
+    }
+
+    /**
+     * scaled to the large icon size of the platform, null if source cannot
+     * be loaded
+     */
+    static Bitmap getLargeIcon(Context context, String source) {
+        Resources resources = context.getResources();
+        int width = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        int height = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+        return get(context, source, width, height);
+    }
+
+    /**
+     * scaled to fit the screen width (at most MAX_BIG_PICTURE_WIDTH) and
+     * half of it in height, the aspect of the big picture area
+     */
+    static Bitmap getBigPicture(Context context, String source) {
+        int width = Math.min(context.getResources().getDisplayMetrics().widthPixels, MAX_BIG_PICTURE_WIDTH);
+        return get(context, source, width, width / 2);
+    }
+
+    static Bitmap get(Context context, String source, int width, int height) {
+        if (Looper.myLooper() == Looper.getMainLooper() && ReactNativeMoPushNotification.verbose) {
+            Log.w("RNMoPushNotification", "BitmapCache used on the main thread");
+        }
+        String key = getKey(source, width, height);
+        Bitmap res = memory.get(key);
+        if (res != null) return res;
+        synchronized (BitmapCache.class) {
+            res = memory.get(key);
+            if (res != null) return res;
+            res = readDisk(context, key);
+            if (res == null) {
+                try {
+                    res = decode(context, source, width, height);
+                } catch (IOException | RuntimeException e) {
+                    Log.w("RNMoPushNotification", "cannot load image " + source, e);
+                }
+                if (res == null) return null;
+                writeDisk(context, key, res);
+            }
+            memory.put(key, res);
+            return res;
+        }
+    }
+
+    private static String getKey(String source, int width, int height) {
+        String key = source + "@" + width + "x" + height;
+        File file = getFile(source);
+        if (file != null) key += "@" + file.lastModified();
+        return key;
+    }
+
+    private static File getFile(String source) {
+        if (source.startsWith("/")) return new File(source);
+        if (source.startsWith("file://")) {
+            String path = Uri.parse(source).getPath();
+            return path != null ? new File(path) : null;
+        }
+        return null;
+    }
+
+    private static InputStream open(Context context, String source) throws IOException {
+        File file = getFile(source);
+        if (file != null) return new FileInputStream(file);
+        InputStream res = context.getContentResolver().openInputStream(Uri.parse(source));
+        if (res == null) throw new IOException("cannot open " + source);
+        return res;
+    }
+
+    /**
+     * the largest power of two sample size that keeps the image at least as
+     * large as the target
+     */
+    static int getSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int res = 1;
+        while (imageWidth / (res * 2) >= width && imageHeight / (res * 2) >= height) {
+            res *= 2;
+        }
+        return res;
+    }
+
+    private static Bitmap decode(Context context, String source, int width, int height) throws IOException {
+        boolean isResource = !source.contains("/");
+        int resourceID = isResource ? ResourceCache.getImage(context, source) : 0;
+        if (isResource && resourceID == 0) return null;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        if (isResource) {
+            BitmapFactory.decodeResource(context.getResources(), resourceID, options);
+        } else {
+            try (InputStream in = open(context, source)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+        }
+        Bitmap bitmap;
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            // not a bitmap, i.e. a vector drawable
+            if (!isResource) return null;
+            Drawable drawable = ContextCompat.getDrawable(context, resourceID);
+            if (drawable == null) return null;
+            float scale = drawable.getIntrinsicWidth() > 0 && drawable.getIntrinsicHeight() > 0
+                ? Math.min((float)width / drawable.getIntrinsicWidth(), (float)height / drawable.getIntrinsicHeight())
+                : 0;
+            int w = scale > 0 ? Math.max(1, Math.round(drawable.getIntrinsicWidth() * scale)) : width;
+            int h = scale > 0 ? Math.max(1, Math.round(drawable.getIntrinsicHeight() * scale)) : height;
+            bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            drawable.setBounds(0, 0, w, h);
+            drawable.draw(new Canvas(bitmap));
+            return bitmap;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, width, height);
+        if (isResource) {
+            bitmap = BitmapFactory.decodeResource(context.getResources(), resourceID, options);
+        } else {
+            try (InputStream in = open(context, source)) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+        }
+        if (bitmap == null) return null;
+        // fit into the target, keeping the aspect
+        float scale = Math.min((float)width / bitmap.getWidth(), (float)height / bitmap.getHeight());
+        if (scale >= 1) return bitmap;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)), Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        if (scaled != bitmap) bitmap.recycle();
+        return scaled;
+    }
+
+    private static File getDiskFile(Context context, String key) {
+        if (dir == null) {
+            dir = new File(context.getCacheDir(), "rnmopushnotification.images");
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                Log.w("RNMoPushNotification", "BitmapCache cannot create " + dir);
+            }
+        }
+        return new File(dir, hash(key));
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder res = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                res.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            }
+            return res.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode()) + "-" + key.length();
+        }
+    }
+
+    private static Bitmap readDisk(Context context, String key) {
+        File file = getDiskFile(context, key);
+        if (!file.exists()) return null;
+        Bitmap res = BitmapFactory.decodeFile(file.getPath());
+        if (res != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return res;
+    }
+
+    private static void writeDisk(Context context, String key, Bitmap bitmap) {
+        File file = getDiskFile(context, key);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            if (bitmap.hasAlpha()) {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } else {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+            }
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "BitmapCache write", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) return;
+        trimDisk(file.length());
+    }
+
+    /**
+     * drop the least recently used files once the cache is over its size
+     */
+    private static void trimDisk(long added) {
+        if (diskBytes >= 0) {
+            diskBytes += added;
+            if (diskBytes <= MAX_DISK_BYTES) return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long total = 0;
+        for (File file : files) total += file.length();
+        for (int i=0; i<files.length && total > MAX_DISK_BYTES; i++) {
+            total -= files[i].length();
+            //noinspection ResultOfMethodCallIgnored
+            files[i].delete();
+        }
+        diskBytes = total;
+    }
+
+}
@@ -0,0 +1,151 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compact binary encoding for bundles with string / number / boolean /
+ * bundle / list values, used for the files we keep on disk. other values are
+ * skipped. unlike Parcel this is stable across android versions.
+ */
+final class BundleCodec {
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INT = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_DOUBLE = 4;
+    private static final byte VALUE_BOOLEAN = 5;
+    private static final byte VALUE_BUNDLE = 6;
+    private static final byte VALUE_LIST = 7;
+
+    private BundleCodec() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("invalid string length");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isSupported(Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+            || value instanceof Double || value instanceof Float || value instanceof Boolean
+            || value instanceof Bundle || value instanceof List;
+    }
+
+    static void writeBundle(DataOutputStream out, Bundle bundle) throws IOException {
+        List<Map.Entry<String, Object>> entries = new ArrayList<>();
+        for (String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if (isSupported(value)) {
+                entries.add(new AbstractMap.SimpleEntry<>(key, value));
+            } else if (ReactNativeMoPushNotification.verbose) {
+                Log.i("RNMoPushNotification", "BundleCodec skipping " + key);
+            }
+        }
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Object> entry : entries) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void writeList(DataOutputStream out, List<?> list) throws IOException {
+        int count = 0;
+        for (Object value : list) {
+            if (isSupported(value)) count++;
+        }
+        out.writeInt(count);
+        for (Object value : list) {
+            if (isSupported(value)) writeValue(out, value);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String)value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long)value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof Bundle) {
+            out.writeByte(VALUE_BUNDLE);
+            writeBundle(out, (Bundle)value);
+        } else if (value instanceof List) {
+            out.writeByte(VALUE_LIST);
+            writeList(out, (List<?>)value);
+        } else {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number)value).doubleValue());
+        }
+    }
+
+    static Bundle readBundle(DataInputStream in) throws IOException {
+        Bundle bundle = new Bundle();
+        int count = in.readInt();
+        for (int i=0; i<count; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            switch (type) {
+                case VALUE_NULL: bundle.putString(key, null); break;
+                case VALUE_STRING: bundle.putString(key, readString(in)); break;
+                case VALUE_INT: bundle.putInt(key, in.readInt()); break;
+                case VALUE_LONG: bundle.putLong(key, in.readLong()); break;
+                case VALUE_DOUBLE: bundle.putDouble(key, in.readDouble()); break;
+                case VALUE_BOOLEAN: bundle.putBoolean(key, in.readBoolean()); break;
+                case VALUE_BUNDLE: bundle.putBundle(key, readBundle(in)); break;
+                case VALUE_LIST: bundle.putSerializable(key, readList(in)); break;
+                default: throw new IOException("invalid value type " + type);
+            }
+        }
+        return bundle;
+    }
+
+    private static ArrayList<Object> readList(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) throw new IOException("invalid list length");
+        ArrayList<Object> list = new ArrayList<>(Math.min(count, 1024));
+        for (int i=0; i<count; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case VALUE_NULL: list.add(null); break;
+                case VALUE_STRING: list.add(readString(in)); break;
+                case VALUE_INT: list.add(in.readInt()); break;
+                case VALUE_LONG: list.add(in.readLong()); break;
+                case VALUE_DOUBLE: list.add(in.readDouble()); break;
+                case VALUE_BOOLEAN: list.add(in.readBoolean()); break;
+                case VALUE_BUNDLE: list.add(readBundle(in)); break;
+                case VALUE_LIST: list.add(readList(in)); break;
+                default: throw new IOException("invalid value type " + type);
+            }
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,97 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * process wide registry of the notification channels known to exist, so
+ * posting to a known channel does not need a NotificationManager round trip.
+ * kept up to date by createNotificationChannel / deleteNotificationChannel,
+ * channels changed behind our back are not noticed.
+ */
+final class ChannelRegistry {
+
+    // ConcurrentHashMap.newKeySet needs api 24
+    private static final Set<String> knownChannels = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static volatile String defaultChannelID;
+
+    private ChannelRegistry() {
+    }
+
+    /**
+     * the firebase default channel id from the manifest meta-data, "default"
+     * if there is none. read once per process.
+     */
+    static String getDefaultChannelID(Context context) {
+        String res = defaultChannelID;
+        if (res == null) {
+            try {
+                ApplicationInfo ai = context.getPackageManager().getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+                res = ai.metaData != null ? ai.metaData.getString("com.google.firebase.messaging.default_notification_channel_id", null) : null;
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w("RNMoPushNotification", "getDefaultChannelID", e);
+            }
+            if (res != null && ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "showNotification firebase default channelID");
+            if (res == null) {
+                if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "showNotification using default channelID");
+                res = "default";
+            }
+            defaultChannelID = res;
+        }
+        return res;
+    }
+
+    /**
+     * make sure the channel exists, creates a default channel if it does not
+     */
+    static void ensureChannel(NotificationManager notificationManager, String channelID) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        if (knownChannels.contains(channelID)) {
+            hits.incrementAndGet();
+            return;
+        }
+        misses.incrementAndGet();
+        if (notificationManager.getNotificationChannel(channelID) == null) {
+            NotificationChannel channel;
+            channel = new NotificationChannel(channelID, channelID, NotificationManager.IMPORTANCE_HIGH);
+            channel.setName("default");
+            channel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+            notificationManager.createNotificationChannel(channel);
+        }
+        knownChannels.add(channelID);
+    }
+
+    static void onChannelCreated(String channelID) {
+        knownChannels.add(channelID);
+    }
+
+    static void onChannelDeleted(String channelID) {
+        knownChannels.remove(channelID);
+    }
+
+    static long getHits() {
+        return hits.get();
+    }
+
+    static long getMisses() {
+        return misses.get();
+    }
+
+    static int getSize() {
+        return knownChannels.size();
+    }
+
+}
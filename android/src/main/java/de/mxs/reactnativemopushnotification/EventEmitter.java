@@ -0,0 +1,81 @@
+package de.mxs.reactnativemopushnotification;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * all events to js go through here. by default every event is emitted as
+ * ReactNativeMoPushNotification on its own. with batching enabled events are
+ * collected for windowMs (or until maxBatchSize is reached) and emitted in
+ * order as one ReactNativeMoPushNotificationBatch event carrying an array.
+ */
+final class EventEmitter {
+
+    private static boolean batching = false;
+    private static long windowMs = 16;
+    private static int maxBatchSize = 100;
+
+    private static final List<WritableMap> batch = new ArrayList<>();
+    private static ReactContext batchContext;
+    private static boolean flushScheduled = false;
+    private static final Runnable flushRunnable = EventEmitter::flush;
+
+    private EventEmitter() {
+    }
+
+    static synchronized void setBatching(boolean enabled, long windowMs, int maxBatchSize) {
+        EventEmitter.batching = enabled;
+        if (windowMs > 0) EventEmitter.windowMs = windowMs;
+        if (maxBatchSize > 0) EventEmitter.maxBatchSize = maxBatchSize;
+        if (!enabled) {
+            EventPipeline.post(flushRunnable);
+        }
+    }
+
+    static void emit(ReactContext reactContext, WritableMap args) {
+        synchronized (EventEmitter.class) {
+            if (batching || !batch.isEmpty()) {
+                if (batchContext != null && batchContext != reactContext) {
+                    flushLocked();
+                }
+                batchContext = reactContext;
+                batch.add(args);
+                if (batch.size() >= maxBatchSize || !batching) {
+                    flushLocked();
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    EventPipeline.getHandler().postDelayed(flushRunnable, windowMs);
+                }
+                return;
+            }
+        }
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotification", args);
+    }
+
+    private static synchronized void flush() {
+        flushLocked();
+    }
+
+    private static void flushLocked() {
+        if (flushScheduled) {
+            flushScheduled = false;
+            EventPipeline.getHandler().removeCallbacks(flushRunnable);
+        }
+        if (batch.isEmpty()) return;
+        WritableArray events = Arguments.createArray();
+        for (WritableMap args : batch) {
+            events.pushMap(args);
+        }
+        batch.clear();
+        ReactContext reactContext = batchContext;
+        batchContext = null;
+        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotificationBatch", events);
+    }
+
+}
@@ -0,0 +1,330 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * optional append-only journal of received events, so events are not lost
+ * if the process dies before js handled them.
+ *
+ * every event is written as one small record before it is dispatched, js
+ * acknowledges it once handled (another small record). events that were not
+ * acknowledged in an earlier process are returned by takeUnacknowledged().
+ * the file is rewritten with only the open events every COMPACT_AFTER acks.
+ * an open event can be written again with the same seq, i.e. with the
+ * outcome of native handling, the last record of a seq wins.
+ *
+ * only the file offsets of open events are kept in memory, payloads are read
+ * back from the file when needed. at most MAX_OPEN events are kept open,
+ * beyond that the oldest is dropped (i.e. if js never starts).
+ *
+ * record: byte type, long seq, int length, payload. the payload of an event
+ * is the kind followed by a BundleCodec encoded bundle. records are not
+ * fsynced, they survive a process kill but not a power loss.
+ */
+final class EventJournal {
+
+    static final class Entry {
+        final long seq;
+        final String kind;
+        final Bundle payload;
+
+        Entry(long seq, String kind, Bundle payload) {
+            this.seq = seq;
+            this.kind = kind;
+            this.payload = payload;
+        }
+    }
+
+    private static final byte TYPE_EVENT = 1;
+    private static final byte TYPE_ACK = 2;
+
+    private static final int COMPACT_AFTER = 128;
+    private static final int MAX_OPEN = 4096;
+
+    private static Boolean enabled;
+    private static File file;
+    private static FileOutputStream out;
+    private static long size = 0;
+    private static long nextSeq = 1;
+    private static long replayUntilSeq = 0;
+    private static int acksSinceCompact = 0;
+    /** seq of open events to their record offset in file */
+    private static LinkedHashMap<Long, Long> open = new LinkedHashMap<>();
+
+    private EventJournal() {
+    }
+
+    static synchronized boolean isEnabled(Context context) {
+        if (enabled == null) {
+            SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+            enabled = sharedPreferences.getBoolean("journalEnabled", false);
+        }
+        return enabled;
+    }
+
+    static synchronized void setEnabled(Context context, boolean value) {
+        enabled = value;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putBoolean("journalEnabled", value)
+            .apply();
+    }
+
+    /**
+     * journal an event, returns its sequence number or 0 if the journal is
+     * disabled or could not be written.
+     */
+    static synchronized long append(Context context, String kind, Bundle payload) {
+        if (!isEnabled(context)) return 0;
+        try {
+            open(context);
+            long seq = nextSeq++;
+            long offset = size;
+            writeRecord(TYPE_EVENT, seq, encodeEvent(kind, payload));
+            open.put(seq, offset);
+            while (open.size() > MAX_OPEN) {
+                long oldest = open.keySet().iterator().next();
+                Log.w("RNMoPushNotification", "EventJournal full, dropping event " + oldest);
+                open.remove(oldest);
+                writeRecord(TYPE_ACK, oldest, new byte[0]);
+                acksSinceCompact++;
+            }
+            return seq;
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.append", e);
+            return 0;
+        }
+    }
+
+    /**
+     * replace the payload of an open event, false if it is not open (anymore)
+     */
+    static synchronized boolean update(Context context, long seq, String kind, Bundle payload) {
+        if (seq <= 0 || !isEnabled(context)) return false;
+        try {
+            open(context);
+            if (!open.containsKey(seq)) return false;
+            long offset = size;
+            writeRecord(TYPE_EVENT, seq, encodeEvent(kind, payload));
+            // keeps the position of seq
+            open.put(seq, offset);
+            return true;
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.update", e);
+            return false;
+        }
+    }
+
+    /**
+     * mark an event as handled
+     */
+    static synchronized void acknowledge(Context context, long seq) {
+        if (seq <= 0 || !isEnabled(context)) return;
+        try {
+            open(context);
+            if (open.remove(seq) == null) return;
+            writeRecord(TYPE_ACK, seq, new byte[0]);
+            acksSinceCompact++;
+            if (acksSinceCompact >= COMPACT_AFTER) {
+                compact();
+            }
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.acknowledge", e);
+        }
+    }
+
+    /**
+     * events from earlier processes that were never acknowledged. each event
+     * is returned only once per process, it stays in the journal until it is
+     * acknowledged.
+     */
+    static synchronized List<Entry> takeUnacknowledged(Context context) {
+        List<Entry> res = new ArrayList<>();
+        if (!isEnabled(context)) return res;
+        try {
+            open(context);
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.takeUnacknowledged", e);
+            return res;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (Map.Entry<Long, Long> item : open.entrySet()) {
+                if (item.getKey() > replayUntilSeq) break;
+                try {
+                    res.add(readEvent(in, item.getValue()));
+                } catch (IOException e) {
+                    Log.w("RNMoPushNotification", "EventJournal skipping unreadable event " + item.getKey(), e);
+                }
+            }
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.takeUnacknowledged", e);
+        }
+        replayUntilSeq = 0;
+        return res;
+    }
+
+    /**
+     * open the journal without js, i.e. after a reboot: a damaged tail is
+     * cut off and acknowledged events are dropped, so the next drain only
+     * reads open events
+     */
+    static synchronized void restore(Context context) {
+        if (!isEnabled(context)) return;
+        try {
+            open(context);
+            if (file.length() > 0) compact();
+        } catch (IOException e) {
+            Log.e("RNMoPushNotification", "EventJournal.restore", e);
+        }
+    }
+
+    static synchronized int getOpenCount() {
+        return open.size();
+    }
+
+    private static void open(Context context) throws IOException {
+        if (out != null) return;
+        file = new File(context.getNoBackupFilesDir(), "rnmopushnotification.journal");
+        long valid = 0;
+        if (file.exists()) {
+            valid = load(file);
+            if (valid < file.length()) {
+                Log.w("RNMoPushNotification", "EventJournal truncating damaged tail at " + valid);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(valid);
+                }
+            }
+        }
+        replayUntilSeq = nextSeq - 1;
+        size = valid;
+        out = new FileOutputStream(file, true);
+        if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "EventJournal open " + open.size() + " events");
+    }
+
+    /**
+     * read all records, returns the length of the valid part of the file
+     */
+    private static long load(File file) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type;
+                long seq;
+                byte[] payload;
+                try {
+                    type = in.readByte();
+                    seq = in.readLong();
+                    int length = in.readInt();
+                    if (length < 0 || length > 1024 * 1024) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (type == TYPE_EVENT) {
+                    open.put(seq, valid);
+                    if (open.size() > MAX_OPEN) open.remove(open.keySet().iterator().next());
+                } else if (type == TYPE_ACK) {
+                    open.remove(seq);
+                } else {
+                    break;
+                }
+                if (seq >= nextSeq) nextSeq = seq + 1;
+                valid += 1 + 8 + 4 + payload.length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * rewrite the file with only the open events. if that fails the current
+     * file stays in use.
+     */
+    private static void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        LinkedHashMap<Long, Long> moved = new LinkedHashMap<>();
+        long movedSize = 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            for (Map.Entry<Long, Long> item : open.entrySet()) {
+                byte[] record = readRecord(in, item.getValue());
+                tmpOut.write(record);
+                moved.put(item.getKey(), movedSize);
+                movedSize += record.length;
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw e;
+        }
+        acksSinceCompact = 0;
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("EventJournal rename failed");
+        }
+        out.close();
+        out = new FileOutputStream(file, true);
+        open = moved;
+        size = movedSize;
+        if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "EventJournal compacted to " + open.size() + " events");
+    }
+
+    private static byte[] encodeEvent(String kind, Bundle payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(bytes);
+        BundleCodec.writeString(data, kind);
+        BundleCodec.writeBundle(data, payload);
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readRecord(RandomAccessFile in, long offset) throws IOException {
+        in.seek(offset + 1 + 8);
+        int length = in.readInt();
+        if (length < 0 || length > 1024 * 1024) throw new IOException("EventJournal bad record at " + offset);
+        byte[] record = new byte[1 + 8 + 4 + length];
+        in.seek(offset);
+        in.readFully(record);
+        return record;
+    }
+
+    private static Entry readEvent(RandomAccessFile in, long offset) throws IOException {
+        byte[] record = readRecord(in, offset);
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+        if (data.readByte() != TYPE_EVENT) throw new IOException("EventJournal not an event at " + offset);
+        long seq = data.readLong();
+        data.readInt();
+        String kind = BundleCodec.readString(data);
+        Bundle payload = BundleCodec.readBundle(data);
+        return new Entry(seq, kind, payload);
+    }
+
+    private static void writeRecord(byte type, long seq, byte[] payload) throws IOException {
+        byte[] record = new byte[1 + 8 + 4 + payload.length];
+        record[0] = type;
+        for (int i=0; i<8; i++) record[1 + i] = (byte)(seq >>> (56 - 8 * i));
+        for (int i=0; i<4; i++) record[9 + i] = (byte)(payload.length >>> (24 - 8 * i));
+        System.arraycopy(payload, 0, record, 13, payload.length);
+        out.write(record);
+        size += record.length;
+    }
+
+}
@@ -0,0 +1,51 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * the background thread all incoming events are processed on: payload
+ * conversion, hooks, notification building and emitting to js. only
+ * starting the react context is done on the main thread.
+ * a single thread, so events are handled in the order they arrived.
+ */
+final class EventPipeline {
+
+    private static Handler handler;
+    private static Handler mainHandler;
+
+    private EventPipeline() {
+    }
+
+    static synchronized Handler getHandler() {
+        // recreated if the thread was quit (i.e. between robolectric tests)
+        if (handler == null || !handler.getLooper().getThread().isAlive()) {
+            HandlerThread thread = new HandlerThread("RNMoPushNotification", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    static boolean isPipelineThread() {
+        return Looper.myLooper() == getHandler().getLooper();
+    }
+
+    static void post(Runnable runnable) {
+        getHandler().post(runnable);
+    }
+
+    static void postMain(Runnable runnable) {
+        getMainHandler().post(runnable);
+    }
+
+}
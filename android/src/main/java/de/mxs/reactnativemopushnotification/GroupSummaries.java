@@ -0,0 +1,308 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * summary notifications for groupKey, maintained natively when enabled
+ * (see setOptions). every group keeps a count and the last maxLines lines
+ * ("title: body" of its notifications), shown as InboxStyle summary. the
+ * summary is posted through NotificationUpdater, so bursts are merged.
+ *
+ * once a group has collapseThreshold notifications they are cancelled and
+ * only the summary is updated from then on, it alerts for every message as
+ * there is no child that would. the posted children of a group are only
+ * tracked while a collapseThreshold is set. the state of a group is kept
+ * until its summary is dismissed, opened or cancelled, and written to disk
+ * (debounced) so it survives process restarts.
+ */
+final class GroupSummaries {
+
+    private static final int MAX_GROUPS = 32;
+    private static final long WRITE_DELAY = 1000;
+
+    private static final class Group {
+        int summaryID;
+        int count = 0;
+        boolean collapsed = false;
+        String title;
+        String channelID;
+        String smallIcon;
+        final ArrayList<String> lines = new ArrayList<>();
+        final ArrayList<Integer> children = new ArrayList<>();
+    }
+
+    private static Boolean enabled;
+    private static int maxLines = 5;
+    private static int collapseThreshold = 0;
+    private static String summaryText = "{{count}}";
+    private static LinkedHashMap<String, Group> groups;
+    private static boolean writePending = false;
+
+    private GroupSummaries() {
+    }
+
+    private static void loadOptions(Context context) {
+        if (enabled != null) return;
+        SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+        enabled = sharedPreferences.getBoolean("groupSummaryEnabled", false);
+        maxLines = sharedPreferences.getInt("groupSummaryMaxLines", 5);
+        collapseThreshold = sharedPreferences.getInt("groupSummaryCollapseThreshold", 0);
+        summaryText = sharedPreferences.getString("groupSummaryText", "{{count}}");
+    }
+
+    /**
+     * collapseThreshold 0 never collapses. summaryText may use {{count}}.
+     */
+    static synchronized void setOptions(Context context, boolean enabledValue, int maxLinesValue, int collapseThresholdValue, String summaryTextValue) {
+        enabled = enabledValue;
+        maxLines = maxLinesValue;
+        collapseThreshold = collapseThresholdValue;
+        summaryText = summaryTextValue;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putBoolean("groupSummaryEnabled", enabledValue)
+            .putInt("groupSummaryMaxLines", maxLinesValue)
+            .putInt("groupSummaryCollapseThreshold", collapseThresholdValue)
+            .putString("groupSummaryText", summaryTextValue)
+            .apply();
+    }
+
+    /**
+     * the group of args if summaries are enabled, null otherwise
+     */
+    static synchronized String getGroupKey(Context context, ReadableMap args) {
+        loadOptions(context);
+        if (!enabled || !args.hasKey("groupKey") || args.isNull("groupKey")) return null;
+        if (args.hasKey("groupSummary") && args.getBoolean("groupSummary")) return null;
+        return args.getString("groupKey");
+    }
+
+    /**
+     * record a notification of the group, returns false if the group is
+     * collapsed and the notification must not be posted
+     */
+    static synchronized boolean addChild(Context context, String groupKey, ReadableMap args, int notificationID) {
+        load(context);
+        Group group = groups.remove(groupKey);
+        if (group == null) {
+            group = new Group();
+            group.summaryID = IdAllocator.nextNotificationID(context);
+        }
+        groups.put(groupKey, group);
+        evict(context);
+
+        String title = args.hasKey("title") ? args.getString("title") : null;
+        String body = args.hasKey("body") ? args.getString("body") : null;
+        String line = title != null && body != null ? title + ": " + body : (body != null ? body : title);
+        group.count++;
+        if (title != null) group.title = title;
+        group.channelID = args.hasKey("channelID") ? args.getString("channelID") : group.channelID;
+        group.smallIcon = args.hasKey("smallIcon") ? args.getString("smallIcon") : group.smallIcon;
+        if (line != null) {
+            group.lines.add(line);
+            while (group.lines.size() > maxLines) group.lines.remove(0);
+        }
+        scheduleWrite(context);
+
+        if (group.collapsed) return false;
+        if (collapseThreshold <= 0) {
+            // only needed to collapse
+            group.children.clear();
+            return true;
+        }
+        NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE));
+        if (group.children.size() + 1 >= collapseThreshold) {
+            removeHidden(notificationManager, group);
+        }
+        if (group.children.size() + 1 >= collapseThreshold) {
+            for (int id : group.children) {
+                NotificationUpdater.forget(id);
+                notificationManager.cancel(id);
+            }
+            group.children.clear();
+            group.collapsed = true;
+            if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "group " + groupKey + " collapsed");
+            return false;
+        }
+        group.children.add(notificationID);
+        return true;
+    }
+
+    /**
+     * drop children that are no longer shown, i.e. dismissed by the user
+     */
+    private static void removeHidden(NotificationManager notificationManager, Group group) {
+        Set<Integer> active = new HashSet<>();
+        try {
+            for (StatusBarNotification item : notificationManager.getActiveNotifications()) {
+                active.add(item.getId());
+            }
+        } catch (RuntimeException e) {
+            Log.w("RNMoPushNotification", "GroupSummaries removeHidden", e);
+            return;
+        }
+        group.children.retainAll(active);
+    }
+
+    /**
+     * post the summary of the group with its current state
+     */
+    static void updateSummary(Context context, String groupKey) {
+        int summaryID;
+        JavaOnlyMap args = new JavaOnlyMap();
+        synchronized (GroupSummaries.class) {
+            load(context);
+            Group group = groups.get(groupKey);
+            if (group == null) return;
+            summaryID = group.summaryID;
+            args.putString("groupKey", groupKey);
+            args.putBoolean("groupSummary", true);
+            // the summary is all that is posted for a collapsed group
+            if (group.collapsed) args.putBoolean("groupAlertSummary", true);
+            if (group.channelID != null) args.putString("channelID", group.channelID);
+            if (group.smallIcon != null) args.putString("smallIcon", group.smallIcon);
+            if (group.title != null) args.putString("title", group.title);
+            if (!group.lines.isEmpty()) args.putString("body", group.lines.get(group.lines.size() - 1));
+            args.putDouble("number", group.count);
+            JavaOnlyArray lines = new JavaOnlyArray();
+            // newest first
+            for (int i=group.lines.size()-1; i>=0; i--) {
+                lines.pushString(group.lines.get(i));
+            }
+            args.putArray("lines", lines);
+            args.putString("summaryText", NotificationTemplates.render(summaryText, Collections.singletonMap("count", String.valueOf(group.count))));
+            JavaOnlyMap data = new JavaOnlyMap();
+            data.putString("groupKey", groupKey);
+            args.putMap("data", data);
+        }
+        NotificationUpdater.update(context, summaryID, args);
+    }
+
+    /**
+     * forget the group of a summary that was dismissed, opened or cancelled
+     */
+    static synchronized void onSummaryRemoved(Context context, int notificationID) {
+        load(context);
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            if (entry.getValue().summaryID != notificationID) continue;
+            groups.remove(entry.getKey());
+            NotificationUpdater.forget(notificationID);
+            scheduleWrite(context);
+            if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "group " + entry.getKey() + " reset");
+            return;
+        }
+    }
+
+    /**
+     * drop the least recently used groups beyond MAX_GROUPS, with their
+     * summaries. otherwise the next message of an evicted group would post a
+     * second summary for it.
+     */
+    private static void evict(Context context) {
+        if (groups.size() <= MAX_GROUPS) return;
+        NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE));
+        while (groups.size() > MAX_GROUPS) {
+            String key = groups.keySet().iterator().next();
+            Group group = Objects.requireNonNull(groups.remove(key));
+            NotificationUpdater.forget(group.summaryID);
+            notificationManager.cancel(group.summaryID);
+            if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "group " + key + " evicted");
+        }
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), "rnmopushnotification.groups");
+    }
+
+    private static void load(Context context) {
+        if (groups != null) return;
+        groups = new LinkedHashMap<>();
+        File file = getFile(context);
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Bundle bundle = BundleCodec.readBundle(in);
+            for (String key : bundle.keySet()) {
+                Bundle item = Objects.requireNonNull(bundle.getBundle(key));
+                Group group = new Group();
+                group.summaryID = item.getInt("summaryID");
+                group.count = item.getInt("count");
+                group.collapsed = item.getBoolean("collapsed");
+                group.title = item.getString("title");
+                group.channelID = item.getString("channelID");
+                group.smallIcon = item.getString("smallIcon");
+                for (Object line : Objects.requireNonNull((ArrayList<?>)item.getSerializable("lines"))) {
+                    group.lines.add((String)line);
+                }
+                for (Object id : Objects.requireNonNull((ArrayList<?>)item.getSerializable("children"))) {
+                    group.children.add((Integer)id);
+                }
+                groups.put(key, group);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w("RNMoPushNotification", "GroupSummaries load", e);
+        }
+    }
+
+    private static void scheduleWrite(Context context) {
+        if (writePending) return;
+        writePending = true;
+        Context appContext = context.getApplicationContext();
+        EventPipeline.getHandler().postDelayed(() -> write(appContext), WRITE_DELAY);
+    }
+
+    private static void write(Context context) {
+        Bundle bundle = new Bundle();
+        synchronized (GroupSummaries.class) {
+            writePending = false;
+            for (Map.Entry<String, Group> entry : groups.entrySet()) {
+                Group group = entry.getValue();
+                Bundle item = new Bundle();
+                item.putInt("summaryID", group.summaryID);
+                item.putInt("count", group.count);
+                item.putBoolean("collapsed", group.collapsed);
+                item.putString("title", group.title);
+                item.putString("channelID", group.channelID);
+                item.putString("smallIcon", group.smallIcon);
+                item.putSerializable("lines", new ArrayList<>(group.lines));
+                item.putSerializable("children", new ArrayList<>(group.children));
+                bundle.putBundle(entry.getKey(), item);
+            }
+        }
+        File file = getFile(context);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            BundleCodec.writeBundle(out, bundle);
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "GroupSummaries write", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w("RNMoPushNotification", "GroupSummaries rename failed");
+        }
+    }
+
+}
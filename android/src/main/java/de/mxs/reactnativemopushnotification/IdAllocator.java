@@ -0,0 +1,121 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * hands out notification ids and pending intent request codes.
+ *
+ * ids are taken from an AtomicInteger without locking. the allocator
+ * persists a high water mark BLOCK ids ahead of the current id, after a
+ * restart it continues from there, so ids of notifications that are still
+ * visible are not handed out again. when the id space is used up it wraps
+ * around to 1, from then on callers should check against the active
+ * notifications (see isWrapped).
+ */
+final class IdAllocator {
+
+    private static final int BLOCK = 1000;
+    private static final int MAX = Integer.MAX_VALUE - BLOCK;
+
+    private static final class Sequence {
+        final String name;
+        final AtomicInteger next = new AtomicInteger(-1);
+        volatile int limit = 0;
+        volatile boolean wrapped = false;
+
+        Sequence(String name) {
+            this.name = name;
+        }
+
+        private synchronized void init(Context context) {
+            if (next.get() >= 0) return;
+            SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+            int start = Math.max(1, sharedPreferences.getInt("idLimit." + name, 1));
+            wrapped = sharedPreferences.getBoolean("idWrapped." + name, false);
+            persist(context, start + BLOCK);
+            next.set(start);
+        }
+
+        private void persist(Context context, int newLimit) {
+            context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+                .putInt("idLimit." + name, newLimit)
+                .putBoolean("idWrapped." + name, wrapped)
+                .commit();
+            limit = newLimit;
+        }
+
+        private synchronized void extend(Context context, int end) {
+            if (end <= limit) return;
+            persist(context, Math.min(end + BLOCK, Integer.MAX_VALUE));
+        }
+
+        private synchronized void wrap(Context context, int cur) {
+            if (next.get() != cur) return;
+            wrapped = true;
+            persist(context, 1 + BLOCK);
+            next.set(1);
+        }
+
+        int reserve(Context context, int count) {
+            while (true) {
+                int cur = next.get();
+                if (cur < 0) {
+                    init(context);
+                    continue;
+                }
+                if (cur > MAX - count) {
+                    wrap(context, cur);
+                    continue;
+                }
+                int end = cur + count;
+                if (end > limit) {
+                    extend(context, end);
+                    continue;
+                }
+                if (next.compareAndSet(cur, end)) return cur;
+            }
+        }
+    }
+
+    private static final Sequence notificationIDs = new Sequence("notification");
+    private static final Sequence requestCodes = new Sequence("request");
+
+    private IdAllocator() {
+    }
+
+    /**
+     * reserve count consecutive notification ids, returns the first
+     */
+    static int reserveNotificationIDs(Context context, int count) {
+        return notificationIDs.reserve(context, count);
+    }
+
+    static int nextNotificationID(Context context) {
+        return notificationIDs.reserve(context, 1);
+    }
+
+    static int nextRequestCode(Context context) {
+        return requestCodes.reserve(context, 1);
+    }
+
+    /**
+     * load both sequences, so the first notification does not wait for it
+     */
+    static void restore(Context context) {
+        if (notificationIDs.next.get() < 0) notificationIDs.init(context);
+        if (requestCodes.next.get() < 0) requestCodes.init(context);
+    }
+
+    /**
+     * true once notification ids wrapped around, new ids may then collide
+     * with notifications that are still active.
+     */
+    static boolean isWrapped(Context context) {
+        if (notificationIDs.next.get() < 0) notificationIDs.init(context);
+        return notificationIDs.wrapped;
+    }
+
+}
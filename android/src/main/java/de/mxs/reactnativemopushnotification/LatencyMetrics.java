@@ -0,0 +1,196 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * latency per stage of message delivery, in ms. every stage has a fixed
+ * size log scale histogram (4 buckets per power of two, so percentiles are
+ * off by at most 25%), memory does not grow with the number of messages.
+ *
+ * stages, all measured from the time the message was received unless noted:
+ * transit (sent time to receipt, device clock vs server clock), handoff
+ * (to the pipeline thread), contextWarm / contextCold (react context ready,
+ * cold if the event had to wait for it), convert (building the event
+ * only), emit (event handed to js), endToEnd (sent time to emit) and
+ * notify (notify() of the notification shown for the message done, natively
+ * from a template or from js with the receivedAt of the event).
+ */
+final class LatencyMetrics {
+
+    static final String STAGE_TRANSIT = "transit";
+    static final String STAGE_HANDOFF = "handoff";
+    static final String STAGE_CONTEXT_WARM = "contextWarm";
+    static final String STAGE_CONTEXT_COLD = "contextCold";
+    static final String STAGE_CONVERT = "convert";
+    static final String STAGE_EMIT = "emit";
+    static final String STAGE_END_TO_END = "endToEnd";
+    static final String STAGE_NOTIFY = "notify";
+
+    private static final String[] STAGES = {
+        STAGE_TRANSIT, STAGE_HANDOFF, STAGE_CONTEXT_WARM, STAGE_CONTEXT_COLD,
+        STAGE_CONVERT, STAGE_EMIT, STAGE_END_TO_END, STAGE_NOTIFY,
+    };
+
+    static final class Histogram {
+
+        static final int BUCKETS = 128;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count = 0;
+        private long sum = 0;
+        private long max = 0;
+
+        static int bucketOf(long value) {
+            if (value < 4) return (int)Math.max(value, 0);
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int)((value >> (exp - 2)) & 3);
+            return Math.min((exp - 1) * 4 + sub, BUCKETS - 1);
+        }
+
+        /**
+         * the largest value that falls into bucket
+         */
+        static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int exp = bucket / 4 + 1;
+            long lower = (long)(4 + bucket % 4) << (exp - 2);
+            return lower + (1L << (exp - 2)) - 1;
+        }
+
+        synchronized void record(long value) {
+            if (value < 0) value = 0;
+            counts[bucketOf(value)]++;
+            count++;
+            sum += value;
+            if (value > max) max = value;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getMax() {
+            return max;
+        }
+
+        synchronized double getMean() {
+            return count > 0 ? (double)sum / count : 0;
+        }
+
+        /**
+         * p between 0 and 1
+         */
+        synchronized long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long)Math.ceil(p * count));
+            long seen = 0;
+            for (int i=0; i<BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        synchronized void reset() {
+            Arrays.fill(counts, 0);
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+    }
+
+    private static final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+    static {
+        for (String stage : STAGES) {
+            histograms.put(stage, new Histogram());
+        }
+    }
+
+    private static Context snapshotContext;
+    private static long snapshotInterval = 0;
+    private static long lastSnapshotCount = -1;
+    private static final Runnable snapshotRunnable = LatencyMetrics::emitSnapshot;
+
+    private LatencyMetrics() {
+    }
+
+    static void record(String stage, long ms) {
+        Histogram histogram = histograms.get(stage);
+        if (histogram != null) histogram.record(ms);
+    }
+
+    /**
+     * { [stage]: { count, mean, p50, p90, p99, max } }
+     */
+    static WritableMap getSnapshot() {
+        WritableMap res = Arguments.createMap();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            WritableMap rs = Arguments.createMap();
+            rs.putDouble("count", histogram.getCount());
+            rs.putDouble("mean", histogram.getMean());
+            rs.putDouble("p50", histogram.percentile(0.5));
+            rs.putDouble("p90", histogram.percentile(0.9));
+            rs.putDouble("p99", histogram.percentile(0.99));
+            rs.putDouble("max", histogram.getMax());
+            res.putMap(entry.getKey(), rs);
+        }
+        return res;
+    }
+
+    static void reset() {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static long getTotalCount() {
+        long res = 0;
+        for (Histogram histogram : histograms.values()) {
+            res += histogram.getCount();
+        }
+        return res;
+    }
+
+    /**
+     * emit an onMetrics event every intervalMs while there are new samples
+     * and js is running, 0 to stop
+     */
+    static synchronized void setSnapshotInterval(Context context, long intervalMs) {
+        snapshotContext = context.getApplicationContext();
+        snapshotInterval = intervalMs;
+        EventPipeline.getHandler().removeCallbacks(snapshotRunnable);
+        if (intervalMs > 0) {
+            EventPipeline.getHandler().postDelayed(snapshotRunnable, intervalMs);
+        }
+    }
+
+    private static void emitSnapshot() {
+        Context context;
+        synchronized (LatencyMetrics.class) {
+            if (snapshotInterval <= 0) return;
+            EventPipeline.getHandler().postDelayed(snapshotRunnable, snapshotInterval);
+            context = snapshotContext;
+        }
+        long total = getTotalCount();
+        if (total == lastSnapshotCount) return;
+        ReactContext reactContext = ((ReactApplication)context).getReactNativeHost().getReactInstanceManager().getCurrentReactContext();
+        if (reactContext == null || !reactContext.hasActiveCatalystInstance()) return;
+        lastSnapshotCount = total;
+        WritableMap args = Arguments.createMap();
+        args.putString("type", "onMetrics");
+        args.putMap("metrics", getSnapshot());
+        EventEmitter.emit(reactContext, args);
+    }
+
+}
@@ -0,0 +1,150 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * drops messages that were already seen, keyed on the message id and
+ * optionally the collapse key with the sent time. keeps the last CAPACITY
+ * keys in an LRU that is written to disk (debounced, on the pipeline
+ * thread) so it survives process restarts.
+ *
+ * the collapse key mode only removes redelivery of the same message (same
+ * collapse key and sent time, i.e. under a new message id). a newer message
+ * with the same collapse key replaces the previous one and is not dropped.
+ * fcm reports the package name as collapse key of non collapsible messages,
+ * that one is ignored.
+ */
+final class MessageDeduplicator {
+
+    static final String NAMESPACE_MESSAGE = "m";
+    static final String NAMESPACE_INTENT = "i";
+
+    private static final int CAPACITY = 512;
+    private static final long WRITE_DELAY = 1000;
+
+    private static LinkedHashMap<String, Boolean> seen;
+    private static Boolean byCollapseKey;
+    private static long suppressed = 0;
+    private static boolean writePending = false;
+
+    private MessageDeduplicator() {
+    }
+
+    /**
+     * true if the message was seen before, otherwise it is remembered and
+     * false is returned. messages without id are never duplicates.
+     */
+    static synchronized boolean isDuplicate(Context context, String namespace, String messageId, String collapseKey, long sentTime) {
+        load(context);
+        String collapseEntry = null;
+        if (byCollapseKey && collapseKey != null && sentTime > 0 && !collapseKey.equals(context.getPackageName())) {
+            collapseEntry = namespace + ":c:" + collapseKey + "@" + sentTime;
+        }
+        boolean duplicate = false;
+        if (messageId != null && seen.get(namespace + ":" + messageId) != null) {
+            duplicate = true;
+        }
+        if (collapseEntry != null && seen.get(collapseEntry) != null) {
+            duplicate = true;
+        }
+        if (duplicate) {
+            suppressed++;
+            if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "dropping duplicate message " + messageId);
+            return true;
+        }
+        if (messageId == null && collapseEntry == null) return false;
+        if (messageId != null) seen.put(namespace + ":" + messageId, Boolean.TRUE);
+        if (collapseEntry != null) seen.put(collapseEntry, Boolean.TRUE);
+        scheduleWrite(context);
+        return false;
+    }
+
+    static synchronized void setByCollapseKey(Context context, boolean value) {
+        byCollapseKey = value;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putBoolean("dedupeByCollapseKey", value)
+            .apply();
+    }
+
+    static synchronized long getSuppressed() {
+        return suppressed;
+    }
+
+    static synchronized int getSize() {
+        return seen != null ? seen.size() : 0;
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), "rnmopushnotification.dedup");
+    }
+
+    private static void load(Context context) {
+        if (byCollapseKey == null) {
+            SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+            byCollapseKey = sharedPreferences.getBoolean("dedupeByCollapseKey", false);
+        }
+        if (seen != null) return;
+        seen = new LinkedHashMap<String, Boolean>(CAPACITY * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+        File file = getFile(context);
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) seen.put(line, Boolean.TRUE);
+            }
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "MessageDeduplicator load", e);
+        }
+    }
+
+    private static void scheduleWrite(Context context) {
+        if (writePending) return;
+        writePending = true;
+        Context appContext = context.getApplicationContext();
+        EventPipeline.getHandler().postDelayed(() -> write(appContext), WRITE_DELAY);
+    }
+
+    private static void write(Context context) {
+        List<String> keys;
+        synchronized (MessageDeduplicator.class) {
+            writePending = false;
+            keys = new ArrayList<>(seen.keySet());
+        }
+        File file = getFile(context);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (String key : keys) {
+                writer.write(key);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "MessageDeduplicator write", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w("RNMoPushNotification", "MessageDeduplicator rename failed");
+        }
+    }
+
+}
@@ -0,0 +1,373 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.text.HtmlCompat;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * builds and posts local notifications. everything that does not depend on
+ * the notification itself (system services, launch intent) is looked up once
+ * per instance, so use one instance for a batch of notifications.
+ */
+final class NotificationPoster {
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final String packageName;
+    private Intent launchIntent;
+    private int reservedNext = 0;
+    private int reservedEnd = 0;
+    private Set<Integer> activeIDs;
+    private long receivedAt = 0;
+
+    NotificationPoster(Context context) {
+        this.context = context;
+        this.notificationManager = Objects.requireNonNull((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE));
+        this.packageName = context.getPackageName();
+    }
+
+    /**
+     * elapsedRealtime when the message the notifications are posted for was
+     * received, the notify latency is recorded from it. args may carry it as
+     * receivedAt as well (the onMessageReceived event has it for js).
+     */
+    NotificationPoster setReceivedAt(long value) {
+        receivedAt = value;
+        return this;
+    }
+
+    /**
+     * reserve ids for the next count notifications posted with this instance
+     */
+    void reserve(int count) {
+        reservedNext = IdAllocator.reserveNotificationIDs(context, count);
+        reservedEnd = reservedNext + count;
+    }
+
+    private int allocateID() {
+        if (activeIDs == null && IdAllocator.isWrapped(context)) {
+            // ids wrapped around, skip the ones still in use
+            activeIDs = new HashSet<>();
+            for (StatusBarNotification item : notificationManager.getActiveNotifications()) {
+                activeIDs.add(item.getId());
+            }
+        }
+        while (true) {
+            int id = reservedNext < reservedEnd ? reservedNext++ : IdAllocator.nextNotificationID(context);
+            if (activeIDs == null || !activeIDs.contains(id)) return id;
+        }
+    }
+
+    /**
+     * the pending intents only carry the notification id and the action,
+     * the rest of the click event comes from the PayloadStore
+     */
+    private Bundle createBundleForNotification(int notificationID) {
+        Bundle bundle = new Bundle();
+        bundle.putInt("id", notificationID);
+        return bundle;
+    }
+
+    private PendingIntent createPendingIntent(Bundle bundle, boolean background) {
+        int requestCode = IdAllocator.nextRequestCode(context);
+        if (background) {
+            Intent intent = new Intent(context, ReactNativeMoPushNotificationReceiver.class);
+            intent.putExtra("ReactNativeMoPushNotification", bundle);
+            return PendingIntent.getBroadcast(
+                context,
+                requestCode,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        } else {
+            if (launchIntent == null) {
+                launchIntent = Objects.requireNonNull(context.getPackageManager().getLaunchIntentForPackage(packageName));
+            }
+            Intent intent = new Intent(launchIntent);
+            intent.putExtra("ReactNativeMoPushNotification", bundle);
+            return PendingIntent.getActivity(
+                context,
+                requestCode,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        }
+    }
+
+    /**
+     * build and post a notification, returns the notification id
+     */
+    int post(ReadableMap args) {
+        return post(args, allocateID());
+    }
+
+    /**
+     * post with an id that was allocated before, i.e. for scheduled
+     * notifications
+     */
+    int post(ReadableMap args, int notificationID) {
+        String groupKey = GroupSummaries.getGroupKey(context, args);
+        // a collapsed group only shows its summary
+        if (groupKey == null || GroupSummaries.addChild(context, groupKey, args, notificationID)) {
+            NotificationCompat.Builder builder = createBuilder(args, notificationID);
+            notify(notificationID, builder);
+            NotificationUpdater.onPosted(notificationID, args, builder);
+            long messageReceivedAt = args.hasKey("receivedAt") && !args.isNull("receivedAt") ? (long)args.getDouble("receivedAt") : receivedAt;
+            long now = SystemClock.elapsedRealtime();
+            // only for notifications of a received message, like the other stages
+            if (messageReceivedAt > 0 && messageReceivedAt <= now) {
+                LatencyMetrics.record(LatencyMetrics.STAGE_NOTIFY, now - messageReceivedAt);
+            }
+        }
+        if (groupKey != null) {
+            GroupSummaries.updateSummary(context, groupKey);
+        }
+
+        if (args.hasKey("turnScreenOn") && args.getBoolean("turnScreenOn")) {
+            PowerManager powerManager = Objects.requireNonNull(context.getSystemService(PowerManager.class));
+            if (!powerManager.isInteractive()) {
+                // PARTIAL_WAKE_LOCK is not sufficient.
+//                PowerManager.WakeLock wl = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,"notification:turnScreenOn");
+                PowerManager.WakeLock wl = powerManager.newWakeLock(PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,"notification:turnScreenOn");
+                wl.acquire(10 * 1000);
+            }
+        }
+        return notificationID;
+    }
+
+    void notify(int notificationID, NotificationCompat.Builder builder) {
+        notificationManager.notify(notificationID, builder.build());
+    }
+
+    /**
+     * apply partial args to a builder from createBuilder, for the fields
+     * that only change the content. false if partial has other fields, the
+     * builder has to be created again then.
+     */
+    static boolean applyUpdate(NotificationCompat.Builder builder, ReadableMap partial, ReadableMap args) {
+        ReadableMapKeySetIterator it = partial.keySetIterator();
+        while (it.hasNextKey()) {
+            String key = it.nextKey();
+            boolean isNull = partial.isNull(key);
+            switch (key) {
+                case "title": builder.setContentTitle(isNull ? null : partial.getString(key)); break;
+                case "body": builder.setContentText(isNull ? null : partial.getString(key)); break;
+                case "subtext": builder.setSubText(isNull ? null : partial.getString(key)); break;
+                case "ticker": builder.setTicker(isNull ? null : partial.getString(key)); break;
+                case "number": builder.setNumber(isNull ? 0 : partial.getInt(key)); break;
+                case "ongoing": builder.setOngoing(!isNull && partial.getBoolean(key)); break;
+                case "progress": setProgress(builder, isNull ? null : partial.getMap(key)); break;
+                case "lines":
+                case "summaryText": setLines(builder, args); break;
+                default: return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setProgress(NotificationCompat.Builder builder, ReadableMap progress) {
+        if (progress == null) {
+            builder.setProgress(0, 0, false);
+        } else {
+            builder.setProgress(
+                progress.hasKey("max") ? progress.getInt("max") : 100,
+                progress.hasKey("current") ? progress.getInt("current") : 0,
+                progress.hasKey("indeterminate") && progress.getBoolean("indeterminate")
+            );
+        }
+    }
+
+    /**
+     * InboxStyle for lines, i.e. of a group summary
+     */
+    private static void setLines(NotificationCompat.Builder builder, ReadableMap args) {
+        ReadableArray lines = args.hasKey("lines") ? args.getArray("lines") : null;
+        if (lines == null) {
+            builder.setStyle(null);
+            return;
+        }
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (int i=0; i<lines.size(); i++) {
+            style.addLine(lines.getString(i));
+        }
+        if (args.hasKey("summaryText") && !args.isNull("summaryText")) {
+            style.setSummaryText(args.getString("summaryText"));
+        }
+        builder.setStyle(style);
+    }
+
+    NotificationCompat.Builder createBuilder(ReadableMap args, int notificationID) {
+        String channelID = args.hasKey("channelID") ? args.getString("channelID") : null;
+        if (channelID == null) {
+            channelID = ChannelRegistry.getDefaultChannelID(context);
+        }
+        ChannelRegistry.ensureChannel(notificationManager, channelID);
+        Bundle data = args.hasKey("data") ? PayloadConverter.toBundle(args.getMap("data")) : null;
+        PayloadStore.put(context, notificationID, PayloadStore.createPayload(args, channelID, data));
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelID);
+        if (args.hasKey("title")) {
+            builder.setContentTitle(args.getString("title"));
+        }
+        if (args.hasKey("body")) {
+            builder.setContentText(args.getString("body"));
+        }
+        if (args.hasKey("vibrate")) {
+            ReadableArray vibrate = args.getArray("vibrate");
+            if (vibrate != null) {
+                long[] pattern = new long[vibrate.size()];
+                for (int i=0; i<vibrate.size(); i++) pattern[i] = vibrate.getInt(i);
+                builder.setVibrate(pattern);
+            }
+        }
+        if (args.hasKey("priority")) {
+            builder.setPriority(args.getInt("priority"));
+        } else {
+            builder.setPriority(NotificationCompat.PRIORITY_HIGH);
+        }
+        if (args.hasKey("category")) {
+            builder.setCategory(args.getString("category"));
+        }
+        if (args.hasKey("number")) {
+            builder.setNumber(args.getInt("number"));
+        }
+        if (args.hasKey("colorized")) {
+            builder.setColorized(args.getBoolean("colorized"));
+        }
+        if (args.hasKey("visibility")) {
+            builder.setVisibility(args.getInt("visibility"));
+        } else {
+            builder.setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+        }
+        if (args.hasKey("ticker")) {
+            builder.setTicker(args.getString("ticker"));
+        }
+        if (args.hasKey("subtext")) {
+            builder.setSubText(args.getString("subtext"));
+        }
+        if (args.hasKey("ongoing")) {
+            builder.setOngoing(args.getBoolean("ongoing"));
+        }
+        if (args.hasKey("progress") && !args.isNull("progress")) {
+            setProgress(builder, args.getMap("progress"));
+        }
+        if (args.hasKey("lights")) {
+            ReadableMap a = args.getMap("lights");
+            if (a != null) {
+                builder.setLights(a.getInt("color"), a.getInt("on"), a.getInt("off"));
+            }
+        }
+        if (args.hasKey("sound")) {
+            Uri sound = ResourceCache.getSound(context, Objects.requireNonNull(args.getString("sound")));
+            if (sound != null) {
+                builder.setSound(sound);
+            }
+        }
+        if (args.hasKey("groupKey")) {
+            builder.setGroup(args.getString("groupKey"));
+        }
+        if (args.hasKey("groupSummary") && args.getBoolean("groupSummary")) {
+            builder.setGroupSummary(true);
+            // groupAlertSummary is set by GroupSummaries for collapsed groups
+            boolean alertSummary = args.hasKey("groupAlertSummary") && args.getBoolean("groupAlertSummary");
+            builder.setGroupAlertBehavior(alertSummary ? NotificationCompat.GROUP_ALERT_SUMMARY : NotificationCompat.GROUP_ALERT_CHILDREN);
+            // so the group state is reset when the summary is dismissed
+            Bundle bundle = createBundleForNotification(notificationID);
+            bundle.putBoolean("groupDismissed", true);
+            builder.setDeleteIntent(createPendingIntent(bundle, true));
+        }
+        if (args.hasKey("largeIcon") && !args.isNull("largeIcon")) {
+            Bitmap largeIcon = BitmapCache.getLargeIcon(context, Objects.requireNonNull(args.getString("largeIcon")));
+            if (largeIcon != null) {
+                builder.setLargeIcon(largeIcon);
+            }
+        }
+        if (args.hasKey("lines") && !args.isNull("lines")) {
+            setLines(builder, args);
+        } else if (args.hasKey("bigPicture") && !args.isNull("bigPicture")) {
+            Bitmap bigPicture = BitmapCache.getBigPicture(context, Objects.requireNonNull(args.getString("bigPicture")));
+            if (bigPicture != null) {
+                builder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPicture));
+            }
+        }
+        if (data != null) {
+            // the builder merges into this, keep the stored payload apart
+            builder.setExtras(new Bundle(data));
+        }
+        builder.setSmallIcon(ResourceCache.getIcon(context, args.hasKey("smallIcon") ? args.getString("smallIcon") : null));
+        if (args.hasKey("autoCancel")) {
+            builder.setAutoCancel(args.getBoolean("autoCancel"));
+        } else {
+            builder.setAutoCancel(true); // removed if tapped
+        }
+
+        {
+            boolean background = args.hasKey("background") && args.getBoolean("background");
+            Bundle bundle = createBundleForNotification(notificationID);
+            builder.setContentIntent(createPendingIntent(bundle, background));
+        }
+
+        if (args.hasKey("fullScreen") && args.getBoolean("fullScreen")) {
+            // @TODO: this should be another intent...
+            boolean background = args.hasKey("background") && args.getBoolean("background");
+            Bundle bundle = createBundleForNotification(notificationID);
+            bundle.putString("action", "fullScreen");
+            PendingIntent pendingIntent = createPendingIntent(bundle, background);
+            builder.setFullScreenIntent(pendingIntent, true);
+        }
+
+        if (args.hasKey("actions")) {
+            ReadableArray actions = Objects.requireNonNull(args.getArray("actions"));
+            for (int i=0; i<actions.size(); i++) {
+                ReadableMap action = Objects.requireNonNull(actions.getMap(i));
+                Bundle bundle = createBundleForNotification(notificationID);
+                boolean background = action.hasKey("background") && action.getBoolean("background");
+                bundle.putString("action", Objects.requireNonNull(action.getString("id")));
+                PendingIntent pendingIntent = createPendingIntent(bundle, background);
+                int iconID = ResourceCache.getIcon(context, action.hasKey("icon") ? action.getString("icon") : null);
+                CharSequence title;
+                if (action.hasKey("html")) {
+                    title = HtmlCompat.fromHtml(Objects.requireNonNull(action.getString("html")), HtmlCompat.FROM_HTML_MODE_LEGACY);
+                } else {
+                    title = Objects.requireNonNull(action.getString("title"));
+                }
+                NotificationCompat.Action.Builder actionBuilder = new NotificationCompat.Action.Builder(
+                        iconID,
+                        title,
+                        pendingIntent
+                );
+                if (action.hasKey("semanticAction")) {
+                    actionBuilder.setSemanticAction(action.getInt("semanticAction"));
+                }
+                if (action.hasKey("allowGeneratedReplies")) {
+                    actionBuilder.setAllowGeneratedReplies(action.getBoolean("allowGeneratedReplies"));
+                }
+                if (action.hasKey("showsUserInterface")) {
+                    actionBuilder.setShowsUserInterface(action.getBoolean("showsUserInterface"));
+                }
+                builder.addAction(actionBuilder.build());
+            }
+        }
+
+        return builder;
+    }
+
+}
@@ -0,0 +1,157 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * notification templates registered by js, so data messages can be shown
+ * without starting js. a message selects a template with its "template"
+ * data field. a template has the arguments of showNotification, in strings
+ * "{{key}}" is replaced with the data field key. a string that is only a
+ * placeholder for a missing field is left out. unless the template has
+ * data of its own, the message data becomes the notification data.
+ */
+final class NotificationTemplates {
+
+    static final String DATA_KEY = "template";
+
+    private static JSONObject templates;
+
+    private NotificationTemplates() {
+    }
+
+    private static void load(Context context) {
+        if (templates != null) return;
+        String json = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).getString("notificationTemplates", null);
+        templates = new JSONObject();
+        if (json == null) return;
+        try {
+            templates = new JSONObject(json);
+        } catch (JSONException e) {
+            Log.w("RNMoPushNotification", "NotificationTemplates load", e);
+        }
+    }
+
+    /**
+     * replaces all templates, persisted
+     */
+    static synchronized void setTemplates(Context context, JSONObject value) {
+        templates = value;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putString("notificationTemplates", value.toString())
+            .apply();
+    }
+
+    private static synchronized JSONObject getTemplate(Context context, String name) {
+        load(context);
+        return templates.optJSONObject(name);
+    }
+
+    /**
+     * the arguments for NotificationPoster if data selects a template,
+     * otherwise null
+     */
+    static ReadableMap render(Context context, Map<String, String> data) {
+        String name = data.get(DATA_KEY);
+        if (name == null) return null;
+        JSONObject template = getTemplate(context, name);
+        if (template == null) {
+            Log.w("RNMoPushNotification", "notification template " + name + " not found");
+            return null;
+        }
+        JavaOnlyMap res = renderObject(template, data);
+        if (!template.has("data")) {
+            JavaOnlyMap notificationData = new JavaOnlyMap();
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                notificationData.putString(entry.getKey(), entry.getValue());
+            }
+            res.putMap("data", notificationData);
+        }
+        return res;
+    }
+
+    private static JavaOnlyMap renderObject(JSONObject object, Map<String, String> data) {
+        JavaOnlyMap res = new JavaOnlyMap();
+        Iterator<String> it = object.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            Object value = object.opt(key);
+            if (value == null || value == JSONObject.NULL) {
+                res.putNull(key);
+            } else if (value instanceof String) {
+                String str = render((String)value, data);
+                if (str != null) res.putString(key, str);
+            } else if (value instanceof Boolean) {
+                res.putBoolean(key, (Boolean)value);
+            } else if (value instanceof Number) {
+                res.putDouble(key, ((Number)value).doubleValue());
+            } else if (value instanceof JSONObject) {
+                res.putMap(key, renderObject((JSONObject)value, data));
+            } else if (value instanceof JSONArray) {
+                res.putArray(key, renderArray((JSONArray)value, data));
+            }
+        }
+        return res;
+    }
+
+    private static JavaOnlyArray renderArray(JSONArray array, Map<String, String> data) {
+        JavaOnlyArray res = new JavaOnlyArray();
+        for (int i=0; i<array.length(); i++) {
+            Object value = array.opt(i);
+            if (value == null || value == JSONObject.NULL) {
+                res.pushNull();
+            } else if (value instanceof String) {
+                String str = render((String)value, data);
+                if (str != null) {
+                    res.pushString(str);
+                } else {
+                    res.pushNull();
+                }
+            } else if (value instanceof Boolean) {
+                res.pushBoolean((Boolean)value);
+            } else if (value instanceof Number) {
+                res.pushDouble(((Number)value).doubleValue());
+            } else if (value instanceof JSONObject) {
+                res.pushMap(renderObject((JSONObject)value, data));
+            } else if (value instanceof JSONArray) {
+                res.pushArray(renderArray((JSONArray)value, data));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * replace {{key}} placeholders, null if value is a single placeholder
+     * for a missing field
+     */
+    static String render(String value, Map<String, String> data) {
+        int start = value.indexOf("{{");
+        if (start < 0) return value;
+        StringBuilder res = new StringBuilder(value.length() + 32);
+        int pos = 0;
+        while (start >= 0) {
+            int end = value.indexOf("}}", start + 2);
+            if (end < 0) break;
+            String replacement = data.get(value.substring(start + 2, end).trim());
+            if (replacement == null && start == 0 && end + 2 == value.length()) return null;
+            res.append(value, pos, start);
+            if (replacement != null) res.append(replacement);
+            pos = end + 2;
+            start = value.indexOf("{{", pos);
+        }
+        res.append(value, pos, value.length());
+        return res.toString();
+    }
+
+}
@@ -0,0 +1,208 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * updates of posted notifications by id, with partial args. the args and
+ * the builder of the last post are kept, content fields are applied to that
+ * builder, other fields create a new one from the merged args.
+ *
+ * android drops notify() calls of apps that post too often, so updates are
+ * posted at most postsPerSecond (all posts count, including new
+ * notifications). an update that arrives while the previous one for the
+ * same id still waits replaces it and is counted as skipped, the last state
+ * is always posted.
+ */
+final class NotificationUpdater {
+
+    private static final int MAX_TRACKED = 64;
+
+    private static final class Tracked {
+        ReadableMap baseArgs;
+        JavaOnlyMap args;
+        NotificationCompat.Builder builder;
+        boolean pending = false;
+        boolean payloadChanged = false;
+    }
+
+    private static final LinkedHashMap<Integer, Tracked> tracked = new LinkedHashMap<Integer, Tracked>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Tracked> eldest) {
+            // a pending update is never dropped
+            return size() > MAX_TRACKED && !eldest.getValue().pending;
+        }
+    };
+    private static final ArrayDeque<Integer> queue = new ArrayDeque<>();
+    private static final Runnable flushRunnable = NotificationUpdater::flush;
+
+    private static Context context;
+    private static double postsPerSecond = 5;
+    private static double tokens = 5;
+    private static long tokensAt = 0;
+    private static long posted = 0;
+    private static long skipped = 0;
+
+    private NotificationUpdater() {
+    }
+
+    /**
+     * 0 to post updates without limit
+     */
+    static synchronized void setRateLimit(double value) {
+        postsPerSecond = value;
+        tokens = Math.min(tokens, value);
+    }
+
+    /**
+     * { posted, skipped, pending }
+     */
+    static synchronized long[] getStats() {
+        return new long[] { posted, skipped, queue.size() };
+    }
+
+    private static void refill() {
+        long now = SystemClock.elapsedRealtime();
+        if (postsPerSecond > 0) {
+            tokens = Math.min(postsPerSecond, tokens + (now - tokensAt) * postsPerSecond / 1000);
+        }
+        tokensAt = now;
+    }
+
+    /**
+     * called by NotificationPoster for every post, it counts against the
+     * limit but is never delayed
+     */
+    static synchronized void onPosted(int notificationID, ReadableMap args, NotificationCompat.Builder builder) {
+        refill();
+        tokens = Math.max(0, tokens - 1);
+        Tracked t = new Tracked();
+        t.baseArgs = args;
+        t.builder = builder;
+        tracked.put(notificationID, t);
+    }
+
+    static synchronized void forget(int notificationID) {
+        Tracked t = tracked.remove(notificationID);
+        if (t != null && t.pending) queue.remove(notificationID);
+    }
+
+    /**
+     * merge partial into the notification, unknown ids are posted with
+     * partial as the whole args
+     */
+    static synchronized void update(Context ctx, int notificationID, ReadableMap partial) {
+        context = ctx.getApplicationContext();
+        NotificationPoster poster = new NotificationPoster(context);
+        Tracked t = tracked.get(notificationID);
+        if (t == null) {
+            t = new Tracked();
+            tracked.put(notificationID, t);
+        }
+        if (t.args == null) {
+            t.args = new JavaOnlyMap();
+            if (t.baseArgs != null) merge(t.args, t.baseArgs);
+            t.baseArgs = null;
+        }
+        JavaOnlyMap changed = merge(t.args, partial);
+        if (t.builder != null && NotificationPoster.applyUpdate(t.builder, changed, t.args)) {
+            t.payloadChanged = true;
+        } else {
+            // also stores the payload
+            t.builder = poster.createBuilder(t.args, notificationID);
+            t.payloadChanged = false;
+        }
+        // an update should not ring again, unless it is the summary of a
+        // collapsed group that stands for a new message
+        t.builder.setOnlyAlertOnce(!(t.args.hasKey("groupAlertSummary") && t.args.getBoolean("groupAlertSummary")));
+        if (t.pending) {
+            skipped++;
+            return;
+        }
+        t.pending = true;
+        queue.add(notificationID);
+        flush();
+    }
+
+    /**
+     * merge source into target, returns the fields that changed, so fields
+     * that are sent again unchanged do not need a new builder
+     */
+    private static JavaOnlyMap merge(JavaOnlyMap target, ReadableMap source) {
+        JavaOnlyMap changed = new JavaOnlyMap();
+        ReadableMapKeySetIterator it = source.keySetIterator();
+        while (it.hasNextKey()) {
+            String key = it.nextKey();
+            if (target.hasKey(key) && Objects.equals(getValue(target, key), getValue(source, key))) continue;
+            switch (source.getType(key)) {
+                case Null: target.putNull(key); changed.putNull(key); break;
+                case Boolean: target.putBoolean(key, source.getBoolean(key)); changed.putBoolean(key, source.getBoolean(key)); break;
+                case Number: target.putDouble(key, source.getDouble(key)); changed.putDouble(key, source.getDouble(key)); break;
+                case String: target.putString(key, source.getString(key)); changed.putString(key, source.getString(key)); break;
+                case Map: target.putMap(key, source.getMap(key)); changed.putMap(key, source.getMap(key)); break;
+                case Array: target.putArray(key, source.getArray(key)); changed.putArray(key, source.getArray(key)); break;
+            }
+        }
+        return changed;
+    }
+
+    private static Object getValue(ReadableMap map, String key) {
+        switch (map.getType(key)) {
+            case Boolean: return map.getBoolean(key);
+            case Number: return map.getDouble(key);
+            case String: return map.getString(key);
+            case Map: return Objects.requireNonNull(map.getMap(key)).toHashMap();
+            case Array: return Objects.requireNonNull(map.getArray(key)).toArrayList();
+            default: return null;
+        }
+    }
+
+    /**
+     * post waiting updates while the rate allows, otherwise try again when
+     * the next post is allowed
+     */
+    private static synchronized void flush() {
+        if (queue.isEmpty()) return;
+        NotificationPoster poster = new NotificationPoster(context);
+        refill();
+        while (!queue.isEmpty() && (postsPerSecond <= 0 || tokens >= 1)) {
+            int notificationID = queue.poll();
+            Tracked t = tracked.get(notificationID);
+            if (t == null || !t.pending) continue;
+            t.pending = false;
+            if (t.payloadChanged) {
+                Bundle payload = PayloadStore.get(context, notificationID);
+                if (payload != null) {
+                    PayloadStore.put(context, notificationID, PayloadStore.createPayload(t.args, payload.getString("channelID"), payload.getBundle("data")));
+                }
+                t.payloadChanged = false;
+            }
+            try {
+                poster.notify(notificationID, t.builder);
+                posted++;
+            } catch (Exception e) {
+                Log.e("RNMoPushNotification", "updateNotification " + notificationID + " failed", e);
+            }
+            if (postsPerSecond > 0) tokens -= 1;
+        }
+        if (!queue.isEmpty()) {
+            EventPipeline.getHandler().removeCallbacks(flushRunnable);
+            long delay = (long)Math.ceil((1 - tokens) * 1000 / postsPerSecond);
+            EventPipeline.getHandler().postDelayed(flushRunnable, Math.max(delay, 1));
+        }
+    }
+
+}
@@ -0,0 +1,515 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * converts payloads between js (ReadableMap / WritableMap), bundles and
+ * the string maps of fcm messages. nested maps become bundles, arrays
+ * become ArrayLists, and back. all call sites use this so data looks the
+ * same no matter where an event comes from.
+ *
+ * with the data json mode (see setDataJsonMode) event data is passed to js
+ * as one json string (dataJson) instead of key by key, js parses it when the
+ * data is used. values of jsonKeys that are a valid json object or array are
+ * spliced into that string as they are, so a data field that already holds
+ * json is never escaped or parsed into objects here. other values are passed
+ * as strings.
+ */
+final class PayloadConverter {
+
+    /**
+     * keys of intent / notification extras that are not part of the data
+     */
+    private static final String[] RESERVED_PREFIXES = { "google.", "android." };
+    private static final String[] RESERVED_KEYS = { "from", "collapse_key" };
+
+    // prefixes by first character, so most keys are checked with one lookup
+    private static final String[][] prefixTable = new String[128][];
+    private static final Set<String> reservedKeys = new HashSet<>();
+
+    // replaced as a whole on change, read without locking
+    private static volatile boolean dataJsonAll = false;
+    private static volatile Set<String> jsonKeys;
+
+    static {
+        for (String prefix : RESERVED_PREFIXES) {
+            char c = prefix.charAt(0);
+            String[] cur = prefixTable[c];
+            String[] next = new String[cur == null ? 1 : cur.length + 1];
+            if (cur != null) System.arraycopy(cur, 0, next, 0, cur.length);
+            next[next.length - 1] = prefix;
+            prefixTable[c] = next;
+        }
+        for (String key : RESERVED_KEYS) {
+            reservedKeys.add(key);
+        }
+    }
+
+    private PayloadConverter() {
+    }
+
+    /**
+     * true for keys fcm / android put into extras
+     */
+    static boolean isReservedKey(String key) {
+        if (key.isEmpty()) return false;
+        char c = key.charAt(0);
+        if (c < prefixTable.length) {
+            String[] prefixes = prefixTable[c];
+            if (prefixes != null) {
+                for (String prefix : prefixes) {
+                    if (key.startsWith(prefix)) return true;
+                }
+            }
+        }
+        return reservedKeys.contains(key);
+    }
+
+    static Bundle toBundle(ReadableMap map) {
+        Bundle res = new Bundle();
+        toBundle(map, res);
+        return res;
+    }
+
+    /**
+     * numbers become doubles, as js does not know the difference
+     */
+    static void toBundle(ReadableMap map, Bundle out) {
+        if (map == null) return;
+        ReadableMapKeySetIterator it = map.keySetIterator();
+        while (it.hasNextKey()) {
+            String key = it.nextKey();
+            switch (map.getType(key)) {
+                case Null: out.putString(key, null); break;
+                case Boolean: out.putBoolean(key, map.getBoolean(key)); break;
+                case Number: out.putDouble(key, map.getDouble(key)); break;
+                case String: out.putString(key, map.getString(key)); break;
+                case Map: out.putBundle(key, toBundle(map.getMap(key))); break;
+                case Array: out.putSerializable(key, toList(map.getArray(key))); break;
+            }
+        }
+    }
+
+    private static ArrayList<Object> toList(ReadableArray array) {
+        ArrayList<Object> res = new ArrayList<>(array == null ? 0 : array.size());
+        if (array == null) return res;
+        for (int i=0; i<array.size(); i++) {
+            switch (array.getType(i)) {
+                case Null: res.add(null); break;
+                case Boolean: res.add(array.getBoolean(i)); break;
+                case Number: res.add(array.getDouble(i)); break;
+                case String: res.add(array.getString(i)); break;
+                case Map: res.add(toBundle(array.getMap(i))); break;
+                case Array: res.add(toList(array.getArray(i))); break;
+            }
+        }
+        return res;
+    }
+
+    static WritableMap toWritableMap(Bundle bundle) {
+        return toWritableMap(bundle, false);
+    }
+
+    /**
+     * with skipReserved keys matching isReservedKey are left out
+     */
+    static WritableMap toWritableMap(Bundle bundle, boolean skipReserved) {
+        WritableMap res = Arguments.createMap();
+        if (bundle == null) return res;
+        for (String key : bundle.keySet()) {
+            if (skipReserved && isReservedKey(key)) continue;
+            putValue(res, key, bundle.get(key));
+        }
+        return res;
+    }
+
+    private static void putValue(WritableMap res, String key, Object value) {
+        if (value == null) {
+            res.putNull(key);
+        } else if (value instanceof String) {
+            res.putString(key, (String)value);
+        } else if (value instanceof Boolean) {
+            res.putBoolean(key, (Boolean)value);
+        } else if (value instanceof Integer) {
+            res.putInt(key, (Integer)value);
+        } else if (value instanceof Number) {
+            res.putDouble(key, ((Number)value).doubleValue());
+        } else if (value instanceof Bundle) {
+            res.putMap(key, toWritableMap((Bundle)value, false));
+        } else if (value instanceof List) {
+            res.putArray(key, toWritableArray((List<?>)value));
+        } else if (value.getClass().isArray()) {
+            res.putArray(key, Arguments.fromArray(value));
+        } else {
+            res.putString(key, value.toString());
+        }
+    }
+
+    private static WritableArray toWritableArray(List<?> list) {
+        WritableArray res = Arguments.createArray();
+        for (Object value : list) {
+            if (value == null) {
+                res.pushNull();
+            } else if (value instanceof String) {
+                res.pushString((String)value);
+            } else if (value instanceof Boolean) {
+                res.pushBoolean((Boolean)value);
+            } else if (value instanceof Integer) {
+                res.pushInt((Integer)value);
+            } else if (value instanceof Number) {
+                res.pushDouble(((Number)value).doubleValue());
+            } else if (value instanceof Bundle) {
+                res.pushMap(toWritableMap((Bundle)value, false));
+            } else if (value instanceof List) {
+                res.pushArray(toWritableArray((List<?>)value));
+            } else if (value.getClass().isArray()) {
+                res.pushArray(Arguments.fromArray(value));
+            } else {
+                res.pushString(value.toString());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * the reverse of toBundle, without the native bridge, for args that are
+     * read back while js is not running
+     */
+    static JavaOnlyMap toReadableMap(Bundle bundle) {
+        JavaOnlyMap res = new JavaOnlyMap();
+        for (String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if (value == null) {
+                res.putNull(key);
+            } else if (value instanceof String) {
+                res.putString(key, (String)value);
+            } else if (value instanceof Boolean) {
+                res.putBoolean(key, (Boolean)value);
+            } else if (value instanceof Number) {
+                res.putDouble(key, ((Number)value).doubleValue());
+            } else if (value instanceof Bundle) {
+                res.putMap(key, toReadableMap((Bundle)value));
+            } else if (value instanceof List) {
+                res.putArray(key, toReadableArray((List<?>)value));
+            } else {
+                res.putString(key, value.toString());
+            }
+        }
+        return res;
+    }
+
+    private static JavaOnlyArray toReadableArray(List<?> list) {
+        JavaOnlyArray res = new JavaOnlyArray();
+        for (Object value : list) {
+            if (value == null) {
+                res.pushNull();
+            } else if (value instanceof String) {
+                res.pushString((String)value);
+            } else if (value instanceof Boolean) {
+                res.pushBoolean((Boolean)value);
+            } else if (value instanceof Number) {
+                res.pushDouble(((Number)value).doubleValue());
+            } else if (value instanceof Bundle) {
+                res.pushMap(toReadableMap((Bundle)value));
+            } else if (value instanceof List) {
+                res.pushArray(toReadableArray((List<?>)value));
+            } else {
+                res.pushString(value.toString());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * fcm data, values are always strings
+     */
+    static WritableMap toWritableMap(Map<String, String> data) {
+        WritableMap res = Arguments.createMap();
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            res.putString(entry.getKey(), entry.getValue());
+        }
+        return res;
+    }
+
+    private static synchronized void loadDataJsonMode(Context context) {
+        if (jsonKeys != null) return;
+        SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+        dataJsonAll = sharedPreferences.getBoolean("dataJsonAll", false);
+        jsonKeys = new HashSet<>(sharedPreferences.getStringSet("dataJsonKeys", Collections.emptySet()));
+    }
+
+    /**
+     * all: pass the whole data as dataJson. keys: data fields holding json,
+     * they are passed in dataJson and parsed in js.
+     */
+    static synchronized void setDataJsonMode(Context context, boolean all, Collection<String> keys) {
+        dataJsonAll = all;
+        jsonKeys = new HashSet<>(keys);
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putBoolean("dataJsonAll", all)
+            .putStringSet("dataJsonKeys", new HashSet<>(keys))
+            .apply();
+    }
+
+
+    /**
+     * puts data and, if enabled, dataJson for fcm data
+     */
+    static void putData(Context context, WritableMap args, Map<String, String> data) {
+        loadDataJsonMode(context);
+        boolean all = dataJsonAll;
+        Set<String> keys = jsonKeys;
+        if (!all && keys.isEmpty()) {
+            args.putMap("data", toWritableMap(data));
+            return;
+        }
+        WritableMap rest = Arguments.createMap();
+        StringBuilder json = new StringBuilder();
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            if (all || keys.contains(entry.getKey())) {
+                appendJsonEntry(json, entry.getKey(), entry.getValue(), keys.contains(entry.getKey()));
+            } else {
+                rest.putString(entry.getKey(), entry.getValue());
+            }
+        }
+        args.putMap("data", rest);
+        if (json.length() > 0) args.putString("dataJson", json.append('}').toString());
+    }
+
+    /**
+     * puts data and, if enabled, dataJson for bundle data
+     */
+    static void putData(Context context, WritableMap args, Bundle data, boolean skipReserved) {
+        loadDataJsonMode(context);
+        boolean all = dataJsonAll;
+        Set<String> keys = jsonKeys;
+        if (!all && keys.isEmpty()) {
+            args.putMap("data", toWritableMap(data, skipReserved));
+            return;
+        }
+        WritableMap rest = Arguments.createMap();
+        StringBuilder json = new StringBuilder();
+        for (String key : data.keySet()) {
+            if (skipReserved && isReservedKey(key)) continue;
+            if (all || keys.contains(key)) {
+                appendJsonEntry(json, key, data.get(key), keys.contains(key));
+            } else {
+                putValue(rest, key, data.get(key));
+            }
+        }
+        args.putMap("data", rest);
+        if (json.length() > 0) args.putString("dataJson", json.append('}').toString());
+    }
+
+    private static void appendJsonEntry(StringBuilder json, String key, Object value, boolean raw) {
+        json.append(json.length() == 0 ? '{' : ',');
+        json.append(JSONObject.quote(key)).append(':');
+        appendJsonValue(json, value, raw);
+    }
+
+    private static void appendJsonValue(StringBuilder json, Object value, boolean raw) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof String) {
+            String str = (String)value;
+            if (raw && isJsonContainer(str)) {
+                json.append(str);
+            } else {
+                json.append(JSONObject.quote(str));
+            }
+        } else if (value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof Number) {
+            double d = ((Number)value).doubleValue();
+            json.append(Double.isNaN(d) || Double.isInfinite(d) ? "null" : value.toString());
+        } else if (value instanceof Bundle) {
+            Bundle bundle = (Bundle)value;
+            json.append('{');
+            boolean first = true;
+            for (String k : bundle.keySet()) {
+                if (!first) json.append(',');
+                first = false;
+                json.append(JSONObject.quote(k)).append(':');
+                appendJsonValue(json, bundle.get(k), false);
+            }
+            json.append('}');
+        } else if (value instanceof List) {
+            json.append('[');
+            boolean first = true;
+            for (Object v : (List<?>)value) {
+                if (!first) json.append(',');
+                first = false;
+                appendJsonValue(json, v, false);
+            }
+            json.append(']');
+        } else {
+            json.append(JSONObject.quote(value.toString()));
+        }
+    }
+
+    /**
+     * only a single complete json object or array is spliced. the check is
+     * strict (a value like {"a":1},"b":2 would add keys to the document) but
+     * builds no tree. anything else is passed as a string.
+     */
+    static boolean isJsonContainer(String value) {
+        JsonScanner scanner = new JsonScanner(value);
+        scanner.skipWhitespace();
+        if (scanner.pos >= value.length()) return false;
+        char first = value.charAt(scanner.pos);
+        if (first != '{' && first != '[') return false;
+        if (!scanner.value(0)) return false;
+        scanner.skipWhitespace();
+        return scanner.pos == value.length();
+    }
+
+    private static final class JsonScanner {
+
+        private static final int MAX_DEPTH = 256;
+
+        final String s;
+        int pos = 0;
+
+        JsonScanner(String s) {
+            this.s = s;
+        }
+
+        void skipWhitespace() {
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+                pos++;
+            }
+        }
+
+        boolean next(char c) {
+            skipWhitespace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean value(int depth) {
+            skipWhitespace();
+            if (pos >= s.length()) return false;
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return object(depth + 1);
+                case '[': return array(depth + 1);
+                case '"': return string();
+                case 't': return literal("true");
+                case 'f': return literal("false");
+                case 'n': return literal("null");
+                default: return number();
+            }
+        }
+
+        boolean object(int depth) {
+            if (depth > MAX_DEPTH) return false;
+            pos++;
+            if (next('}')) return true;
+            do {
+                skipWhitespace();
+                if (pos >= s.length() || s.charAt(pos) != '"' || !string()) return false;
+                if (!next(':') || !value(depth)) return false;
+            } while (next(','));
+            return next('}');
+        }
+
+        boolean array(int depth) {
+            if (depth > MAX_DEPTH) return false;
+            pos++;
+            if (next(']')) return true;
+            do {
+                if (!value(depth)) return false;
+            } while (next(','));
+            return next(']');
+        }
+
+        boolean string() {
+            pos++;
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return true;
+                if (c < 0x20) return false;
+                if (c != '\\') continue;
+                if (pos >= s.length()) return false;
+                c = s.charAt(pos++);
+                if (c == 'u') {
+                    if (pos + 4 > s.length()) return false;
+                    for (int i=0; i<4; i++) {
+                        if (Character.digit(s.charAt(pos++), 16) < 0) return false;
+                    }
+                } else if ("\"\\/bfnrt".indexOf(c) < 0) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        boolean literal(String literal) {
+            if (!s.startsWith(literal, pos)) return false;
+            pos += literal.length();
+            return true;
+        }
+
+        boolean number() {
+            int start = pos;
+            if (pos < s.length() && s.charAt(pos) == '-') pos++;
+            if (pos < s.length() && s.charAt(pos) == '0') {
+                pos++;
+            } else if (digits() == 0) {
+                return false;
+            }
+            if (pos < s.length() && s.charAt(pos) == '.') {
+                pos++;
+                if (digits() == 0) return false;
+            }
+            if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                pos++;
+                if (pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) pos++;
+                if (digits() == 0) return false;
+            }
+            return pos > start;
+        }
+
+        int digits() {
+            int start = pos;
+            while (pos < s.length() && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') pos++;
+            return pos - start;
+        }
+
+    }
+
+    static void log(String prefix, Bundle bundle) {
+        if (bundle == null) return;
+        for (String key : bundle.keySet()) {
+            Log.i("RNMoPushNotification", "[" + prefix + key + "] = " + bundle.get(key));
+        }
+    }
+
+}
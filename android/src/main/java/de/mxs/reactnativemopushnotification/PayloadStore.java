@@ -0,0 +1,160 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * click payloads of posted notifications (title, body, data etc.), keyed by
+ * notification id. the pending intents of a notification only carry the id,
+ * the payload is looked up here when the intent fires. kept in memory and in
+ * one small file per notification, written on the pipeline thread.
+ *
+ * beyond MAX_ENTRIES the oldest payloads are dropped, but only those of
+ * notifications that are no longer shown, so a click on an old ongoing or
+ * grouped notification still finds its payload.
+ */
+final class PayloadStore {
+
+    private static final int MAX_ENTRIES = 500;
+
+    private static File dir;
+    private static LinkedHashMap<Integer, Bundle> entries;
+
+    private PayloadStore() {
+    }
+
+    private static void load(Context context) {
+        if (entries != null) return;
+        entries = new LinkedHashMap<>();
+        dir = new File(context.getNoBackupFilesDir(), "rnmopushnotification.payloads");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w("RNMoPushNotification", "PayloadStore cannot create " + dir);
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        // oldest first, payloads are loaded lazily
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            try {
+                entries.put(Integer.parseInt(file.getName()), null);
+            } catch (NumberFormatException e) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * what is stored for the click event of a notification
+     */
+    static Bundle createPayload(ReadableMap args, String channelID, Bundle data) {
+        Bundle payload = new Bundle();
+        if (args.hasKey("title")) payload.putString("title", args.getString("title"));
+        if (args.hasKey("subtext")) payload.putString("subtext", args.getString("subtext"));
+        if (args.hasKey("body")) payload.putString("body", args.getString("body"));
+        if (args.hasKey("number")) payload.putInt("number", args.getInt("number"));
+        // as Notification.color of the posted notification, no color is set
+        payload.putInt("color", Notification.COLOR_DEFAULT);
+        payload.putString("channelID", channelID);
+        if (data != null) {
+            payload.putBundle("data", data);
+        }
+        return payload;
+    }
+
+    static synchronized void put(Context context, int notificationID, Bundle payload) {
+        load(context);
+        entries.remove(notificationID);
+        entries.put(notificationID, payload);
+        Context appContext = context.getApplicationContext();
+        EventPipeline.post(() -> write(appContext, notificationID, payload));
+    }
+
+    private static synchronized void write(Context context, int notificationID, Bundle payload) {
+        // replaced or removed in the meantime
+        if (entries.get(notificationID) != payload) return;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, String.valueOf(notificationID)))))) {
+            BundleCodec.writeBundle(out, payload);
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "PayloadStore.put " + notificationID, e);
+        }
+        if (entries.size() > MAX_ENTRIES) evict(context, notificationID);
+    }
+
+    /**
+     * keep is the id that was just stored, it may not be posted yet
+     */
+    private static void evict(Context context, int keep) {
+        NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE));
+        Set<Integer> active = new HashSet<>();
+        try {
+            for (StatusBarNotification item : notificationManager.getActiveNotifications()) {
+                active.add(item.getId());
+            }
+        } catch (RuntimeException e) {
+            // without the active ones nothing can be dropped safely
+            Log.w("RNMoPushNotification", "PayloadStore evict", e);
+            return;
+        }
+        Iterator<Integer> it = entries.keySet().iterator();
+        while (entries.size() > MAX_ENTRIES && it.hasNext()) {
+            int id = it.next();
+            if (id == keep || active.contains(id)) continue;
+            it.remove();
+            //noinspection ResultOfMethodCallIgnored
+            new File(dir, String.valueOf(id)).delete();
+        }
+    }
+
+    /**
+     * the payload for a notification, null if unknown. reads the file if it
+     * is not in memory, so only call it on the pipeline thread.
+     */
+    static synchronized Bundle get(Context context, int notificationID) {
+        load(context);
+        if (!entries.containsKey(notificationID)) return null;
+        Bundle payload = entries.get(notificationID);
+        if (payload == null) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir, String.valueOf(notificationID)))))) {
+                payload = BundleCodec.readBundle(in);
+                entries.put(notificationID, payload);
+            } catch (IOException e) {
+                Log.w("RNMoPushNotification", "PayloadStore.get " + notificationID, e);
+                entries.remove(notificationID);
+            }
+        }
+        return payload;
+    }
+
+    static synchronized void remove(Context context, int notificationID) {
+        load(context);
+        if (entries.containsKey(notificationID)) {
+            entries.remove(notificationID);
+            //noinspection ResultOfMethodCallIgnored
+            new File(dir, String.valueOf(notificationID)).delete();
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.ReactInstanceEventListener;
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.bridge.ReactContext;
+
+import java.util.ArrayDeque;
+
+/**
+ * events that arrive while the react context is not up are queued here and
+ * delivered in order, exactly once, as soon as the context is initialized.
+ * queueing and delivery happen on the EventPipeline thread.
+ * there is at most one instance listener, it is removed after draining. the
+ * context is checked again after adding it, in case it came up in between.
+ * the queue is bounded, overflow drops either the oldest or the newest event.
+ */
+final class PendingEvents {
+
+    interface Delivery {
+        /**
+         * queued is true if the event had to wait for the react context
+         */
+        void deliver(ReactContext reactContext, boolean queued);
+    }
+
+    static final String OVERFLOW_DROP_OLDEST = "dropOldest";
+    static final String OVERFLOW_DROP_NEWEST = "dropNewest";
+
+    private static final ArrayDeque<Delivery> queue = new ArrayDeque<>();
+    private static boolean configLoaded = false;
+    private static int limit = 256;
+    private static String overflow = OVERFLOW_DROP_OLDEST;
+    private static ReactInstanceManager listeningOn;
+    private static final ReactInstanceEventListener listener = PendingEvents::onReactContextInitialized;
+
+    private static long enqueued = 0;
+    private static long delivered = 0;
+    private static long dropped = 0;
+    private static int maxDepth = 0;
+
+    private PendingEvents() {
+    }
+
+    private static void loadConfig(Context context) {
+        if (configLoaded) return;
+        configLoaded = true;
+        SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+        limit = sharedPreferences.getInt("pendingEventsLimit", limit);
+        overflow = sharedPreferences.getString("pendingEventsOverflow", overflow);
+    }
+
+    /**
+     * set queue limit and overflow policy, persisted for the next cold start
+     */
+    static synchronized void setConfig(Context context, int limit, String overflow) {
+        loadConfig(context);
+        if (limit > 0) PendingEvents.limit = limit;
+        if (OVERFLOW_DROP_OLDEST.equals(overflow) || OVERFLOW_DROP_NEWEST.equals(overflow)) PendingEvents.overflow = overflow;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putInt("pendingEventsLimit", PendingEvents.limit)
+            .putString("pendingEventsOverflow", PendingEvents.overflow)
+            .apply();
+    }
+
+    static void dispatch(Context context, Delivery delivery) {
+        dispatch(context, delivery, true);
+    }
+
+    /**
+     * deliver now if the react context is up and nothing is queued, otherwise
+     * queue the event and, with startContext, make sure the context is being
+     * created. without, the event waits until the app starts js anyway.
+     * deliveries always run on the pipeline thread, in dispatch order.
+     */
+    static void dispatch(Context context, Delivery delivery, boolean startContext) {
+        if (!EventPipeline.isPipelineThread()) {
+            EventPipeline.post(() -> dispatch(context, delivery, startContext));
+            return;
+        }
+        ReactInstanceManager reactInstanceManager = ((ReactApplication)context.getApplicationContext()).getReactNativeHost().getReactInstanceManager();
+        ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
+        boolean listenerAdded = false;
+        synchronized (PendingEvents.class) {
+            loadConfig(context);
+            if (reactContext == null || !queue.isEmpty()) {
+                enqueue(delivery);
+                if (listeningOn == null) {
+                    listeningOn = reactInstanceManager;
+                    reactInstanceManager.addReactInstanceEventListener(listener);
+                    listenerAdded = true;
+                }
+                reactContext = null;
+            }
+        }
+        if (listenerAdded) {
+            // the context may have been initialized after it was read above and
+            // before the listener was added, then the listener is never called
+            ReactContext current = reactInstanceManager.getCurrentReactContext();
+            if (current != null) {
+                EventPipeline.post(() -> drain(current));
+                return;
+            }
+        }
+        if (reactContext != null) {
+            deliver(reactContext, delivery, false);
+        } else if (startContext) {
+            // must be started from the main thread
+            EventPipeline.postMain(() -> {
+                if (reactInstanceManager.getCurrentReactContext() == null && !reactInstanceManager.hasStartedCreatingInitialContext()) {
+                    reactInstanceManager.createReactContextInBackground();
+                }
+            });
+        }
+    }
+
+    private static void enqueue(Delivery delivery) {
+        if (queue.size() >= limit) {
+            dropped++;
+            if (OVERFLOW_DROP_NEWEST.equals(overflow)) {
+                Log.w("RNMoPushNotification", "PendingEvents queue full, dropping newest event");
+                return;
+            }
+            Log.w("RNMoPushNotification", "PendingEvents queue full, dropping oldest event");
+            queue.pollFirst();
+        }
+        queue.addLast(delivery);
+        enqueued++;
+        if (queue.size() > maxDepth) maxDepth = queue.size();
+    }
+
+    private static void onReactContextInitialized(ReactContext reactContext) {
+        EventPipeline.post(() -> drain(reactContext));
+    }
+
+    private static void drain(ReactContext reactContext) {
+        if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "PendingEvents drain " + queue.size());
+        while (true) {
+            Delivery delivery;
+            synchronized (PendingEvents.class) {
+                delivery = queue.pollFirst();
+                if (delivery == null) {
+                    if (listeningOn != null) {
+                        listeningOn.removeReactInstanceEventListener(listener);
+                        listeningOn = null;
+                    }
+                    return;
+                }
+            }
+            deliver(reactContext, delivery, true);
+        }
+    }
+
+    private static void deliver(ReactContext reactContext, Delivery delivery, boolean queued) {
+        try {
+            delivery.deliver(reactContext, queued);
+        } catch (Exception e) {
+            Log.e("RNMoPushNotification", "PendingEvents deliver failed", e);
+        }
+        synchronized (PendingEvents.class) {
+            delivered++;
+        }
+    }
+
+    static synchronized int getDepth() {
+        return queue.size();
+    }
+
+    static synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    static synchronized long getEnqueued() {
+        return enqueued;
+    }
+
+    static synchronized long getDelivered() {
+        return delivered;
+    }
+
+    static synchronized long getDropped() {
+        return dropped;
+    }
+
+    static synchronized int getLimit() {
+        return limit;
+    }
+
+    static synchronized String getOverflow() {
+        return overflow;
+    }
+
+}
@@ -1,30 +1,22 @@
 package de.mxs.reactnativemopushnotification;
 
-import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.content.res.Resources;
 import android.media.AudioAttributes;
-import android.media.RingtoneManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.PowerManager;
 import android.provider.Settings;
 import android.service.notification.StatusBarNotification;
-import androidx.core.app.NotificationCompat;
+import androidx.annotation.RequiresApi;
 import androidx.core.os.ConfigurationCompat;
-import androidx.core.text.HtmlCompat;
 
 import android.util.Log;
 
@@ -39,24 +31,29 @@ import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.google.firebase.installations.FirebaseInstallations;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
 public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule implements ActivityEventListener {
 
-    private static int notificationIDCounter = 1;
-    private static int requestIDCounter = 1;
-    private final HashMap<String, PowerManager.WakeLock> wakeLocks = new HashMap<>();
     static boolean verbose = false;
 
+    private Map<String, String> staticInfo;
+
     ReactNativeMoPushNotification(ReactApplicationContext reactContext) {
         super(reactContext);
         reactContext.addActivityEventListener(this);
@@ -68,27 +65,6 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
         }
     }
 
-    private void readableMapToBundle(ReadableMap a, Bundle b) {
-        if (a == null) return;
-        for (Map.Entry<String,Object> i : a.toHashMap().entrySet()) {
-            if (i.getValue() instanceof String) {
-                b.putString(i.getKey(), (String)i.getValue());
-            } else if (i.getValue() instanceof Float) {
-                b.putFloat(i.getKey(), (Float)i.getValue());
-            } else if (i.getValue() instanceof Double) {
-                b.putDouble(i.getKey(), (Double)i.getValue());
-            } else if (i.getValue() instanceof Long) {
-                b.putLong(i.getKey(), (Long)i.getValue());
-            } else if (i.getValue() instanceof Integer) {
-                b.putInt(i.getKey(), (Integer)i.getValue());
-            } else if (i.getValue() instanceof Boolean) {
-                b.putBoolean(i.getKey(), (Boolean)i.getValue());
-            } else {
-                Log.i("RNMoPushNotification", "cannot convert " + i.getValue());
-            }
-        }
-    }
-
     static void notificationToMap(Notification notification, WritableMap rs) {
         Bundle extras = notification.extras;
         rs.putInt("color", notification.color);
@@ -99,30 +75,7 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             rs.putString("channelID", notification.getChannelId());
         }
-        WritableMap data = Arguments.createMap();
-        for (String k : extras.keySet()) {
-            if (k.startsWith("google.") || k.startsWith("android.") || k.equals("from") || k.equals("collapse_key")) continue;
-            Object v = extras.get(k);
-            if (v instanceof String) {
-                data.putString(k, (String)v);
-            } else if (v instanceof Double) {
-                data.putDouble(k, (Double)v);
-            } else if (v instanceof Float) {
-                data.putDouble(k, (Float)v);
-            } else if (v instanceof Long) {
-                data.putDouble(k, (Long)v);
-            } else if (v instanceof Integer) {
-                data.putInt(k, (Integer)v);
-            } else if (v instanceof Boolean) {
-                data.putBoolean(k, (Boolean) v);
-            } else if (v == null) {
-                data.putNull(k);
-            } else {
-                data.putString(k, v.toString());
-                // sub bundle etc.?
-            }
-        }
-        rs.putMap("data", data);
+        rs.putMap("data", PayloadConverter.toWritableMap(extras, true));
     }
 
     @Nonnull
@@ -151,43 +104,96 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
             promise.reject(e);
             return;
         }
-        firebaseInstallations.getToken(false).addOnSuccessListener(
-                res -> promise.resolve(res.getToken())
-        ).addOnFailureListener(ex -> {
+        firebaseInstallations.getToken(false).addOnSuccessListener(res -> {
+            TokenCache.set(getReactApplicationContext(), res.getToken(), TokenCache.getExpiresAt(res));
+            promise.resolve(res.getToken());
+        }).addOnFailureListener(ex -> {
             Log.i("RNMoPushNotification", "getFirebaseInstanceId", ex);
             promise.reject(ex);
         });
     }
 
+    /**
+     * the parts of getSystemInfo that do not change while the app runs,
+     * computed once
+     */
+    private synchronized Map<String, String> getStaticInfo() {
+        if (staticInfo == null) {
+            ReactApplicationContext context = getReactApplicationContext();
+            Locale locale = ConfigurationCompat.getLocales(context.getResources().getConfiguration()).get(0);
+            Map<String, String> res = new HashMap<>();
+            res.put("packageName", context.getPackageName());
+            res.put("locale", locale.getLanguage() + "-" + locale.getCountry());
+            Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+            if (launchIntent != null && launchIntent.getComponent() != null) {
+                res.put("launchIntent", launchIntent.getComponent().getPackageName() + "/" + launchIntent.getComponent().getClassName());
+            }
+            staticInfo = res;
+        }
+        return staticInfo;
+    }
+
+    /**
+     * static system info and the cached firebase token (null until it was
+     * fetched once), available synchronously in js
+     */
+    @Override
+    public Map<String, Object> getConstants() {
+        Map<String, Object> res = new HashMap<>(getStaticInfo());
+        res.put("firebaseInstanceId", TokenCache.get(getReactApplicationContext()));
+        return res;
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void getSystemInfo(final Promise promise) {
-        ReactApplicationContext context = getReactApplicationContext();
-        Locale locale = ConfigurationCompat.getLocales(context.getResources().getConfiguration()).get(0);
         WritableMap res = Arguments.createMap();
-        res.putString("packageName", context.getPackageName());
-        res.putString("locale", locale.getLanguage() + "-" + locale.getCountry());
-        Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
-        if (launchIntent != null) {
-            if (launchIntent.getComponent() != null) {
-                res.putString("launchIntent", launchIntent.getComponent().getPackageName() + "/" + launchIntent.getComponent().getClassName());
-            }
+        for (Map.Entry<String, String> entry : getStaticInfo().entrySet()) {
+            res.putString(entry.getKey(), entry.getValue());
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            ReactApplicationContext context = getReactApplicationContext();
             NotificationManager notificationManager = Objects.requireNonNull(context.getSystemService(NotificationManager.class));
             res.putBoolean("notificationsEnabled", notificationManager.areNotificationsEnabled());
         }
         promise.resolve(res);
     }
 
-    @SuppressLint("DiscouragedApi")
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private void applyChannelArgs(NotificationChannel channel, ReadableMap args) {
+        channel.setName(args.hasKey("name") ? args.getString("name") : channel.getId());
+        if (args.hasKey("importance") && args.getType("importance") == ReadableType.Number) {
+            channel.setImportance(args.getInt("importance"));
+        } else {
+            channel.setImportance(NotificationManager.IMPORTANCE_HIGH);
+        }
+        if (args.hasKey("lockscreenVisibility") && args.getType("lockscreenVisibility") == ReadableType.Number) {
+            channel.setLockscreenVisibility(args.getInt("lockscreenVisibility"));
+        }
+        if (args.hasKey("bypassDnd") && args.getType("bypassDnd") == ReadableType.Boolean) {
+            channel.setBypassDnd(args.getBoolean("bypassDnd"));
+        }
+        if (args.hasKey("lightColor") && args.getType("lightColor") == ReadableType.Number) {
+            channel.setLightColor(args.getInt("lightColor"));
+        }
+        if (args.hasKey("sound") && args.getType("sound") == ReadableType.String) {
+            channel.setSound(
+                    ResourceCache.getSound(getReactApplicationContext(), Objects.requireNonNull(args.getString("sound"))),
+                    new AudioAttributes.Builder()
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .setUsage(AudioAttributes.USAGE_NOTIFICATION)
+                            .build()
+            );
+        } else {
+            channel.setSound(null, null);
+        }
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void createNotificationChannel(ReadableMap args) {
         if (verbose) Log.i("RNMoPushNotification", "createNotificationChannel args=" + args);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            Resources resources = getReactApplicationContext().getResources();
-            String packageName = getReactApplicationContext().getPackageName();
             String id = args.getString("id");
             NotificationManager notificationManager = (NotificationManager)getReactApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
             if (notificationManager == null) return;
@@ -195,46 +201,96 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
             if (channel == null) {
                 channel = new NotificationChannel(id, id, NotificationManager.IMPORTANCE_NONE);
             }
-            channel.setName(args.getString("name"));
-            if (args.hasKey("importance") && args.getType("importance") == ReadableType.Number) {
-                channel.setImportance(args.getInt("importance"));
-            } else {
-                channel.setImportance(NotificationManager.IMPORTANCE_HIGH);
+            applyChannelArgs(channel, args);
+            notificationManager.createNotificationChannel(channel);
+            ChannelRegistry.onChannelCreated(id);
+        }
+    }
+
+    /**
+     * make the channels match the given list. existing channels are read once
+     * and only differences are written: new channels are created, existing
+     * ones are updated if the name changed or the importance was lowered (the
+     * only things android lets an app change later). with deleteOthers
+     * channels not in the list are deleted, except for the default channel.
+     * resolves with the ids that were created, updated, deleted or unchanged.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setNotificationChannels(ReadableArray list, ReadableMap options, Promise promise) {
+        if (verbose) Log.i("RNMoPushNotification", "setNotificationChannels list=" + list + " options=" + options);
+        WritableArray created = Arguments.createArray();
+        WritableArray updated = Arguments.createArray();
+        WritableArray deleted = Arguments.createArray();
+        WritableArray unchanged = Arguments.createArray();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)getReactApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE));
+            Map<String, NotificationChannel> existing = new HashMap<>();
+            for (NotificationChannel channel : notificationManager.getNotificationChannels()) {
+                existing.put(channel.getId(), channel);
+                ChannelRegistry.onChannelCreated(channel.getId());
             }
-            if (args.hasKey("lockscreenVisibility") && args.getType("lockscreenVisibility") == ReadableType.Number) {
-                channel.setLockscreenVisibility(args.getInt("lockscreenVisibility"));
+            Set<String> requested = new HashSet<>();
+            List<NotificationChannel> changes = new ArrayList<>();
+            for (int i=0; i<list.size(); i++) {
+                ReadableMap args = Objects.requireNonNull(list.getMap(i));
+                String id = Objects.requireNonNull(args.getString("id"));
+                requested.add(id);
+                NotificationChannel channel = new NotificationChannel(id, id, NotificationManager.IMPORTANCE_HIGH);
+                applyChannelArgs(channel, args);
+                NotificationChannel current = existing.get(id);
+                if (current == null) {
+                    changes.add(channel);
+                    created.pushString(id);
+                } else if (!String.valueOf(current.getName()).equals(String.valueOf(channel.getName())) || channel.getImportance() < current.getImportance()) {
+                    changes.add(channel);
+                    updated.pushString(id);
+                } else {
+                    unchanged.pushString(id);
+                }
             }
-            if (args.hasKey("bypassDnd") && args.getType("bypassDnd") == ReadableType.Boolean) {
-                channel.setBypassDnd(args.getBoolean("bypassDnd"));
+            if (!changes.isEmpty()) {
+                notificationManager.createNotificationChannels(changes);
+                for (NotificationChannel channel : changes) {
+                    ChannelRegistry.onChannelCreated(channel.getId());
+                }
             }
-            if (args.hasKey("lightColor") && args.getType("lightColor") == ReadableType.Number) {
-                channel.setLightColor(args.getInt("lightColor"));
+            if (options != null && options.hasKey("deleteOthers") && options.getBoolean("deleteOthers")) {
+                String defaultChannelID = ChannelRegistry.getDefaultChannelID(getReactApplicationContext());
+                for (String id : existing.keySet()) {
+                    if (requested.contains(id) || id.equals(defaultChannelID) || id.equals(NotificationChannel.DEFAULT_CHANNEL_ID)) continue;
+                    notificationManager.deleteNotificationChannel(id);
+                    ChannelRegistry.onChannelDeleted(id);
+                    deleted.pushString(id);
+                }
             }
-            if (args.hasKey("sound") && args.getType("sound") == ReadableType.String) {
-                if ("default".equals(args.getString("sound"))) {
-                    channel.setSound(
-                            RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION),
-                            new AudioAttributes.Builder()
-                                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                                    .setUsage(AudioAttributes.USAGE_NOTIFICATION)
-                                    .build()
-                    );
+        }
+        WritableMap res = Arguments.createMap();
+        res.putArray("created", created);
+        res.putArray("updated", updated);
+        res.putArray("deleted", deleted);
+        res.putArray("unchanged", unchanged);
+        promise.resolve(res);
+    }
 
-                } else {
-                    int soundID = resources.getIdentifier(args.getString("sound"), "raw", packageName);
-                    channel.setSound(
-                            Uri.parse(ContentResolver.SCHEME_ANDROID_RESOURCE + "://" + packageName + "/" + soundID),
-                            new AudioAttributes.Builder()
-                                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                                    .setUsage(AudioAttributes.USAGE_NOTIFICATION)
-                                    .build()
-                    );
-                }
-            } else {
-                channel.setSound(null, null);
+    /**
+     * resolve and cache icons and sounds ahead of time. names are "type/name"
+     * (i.e. "raw/ding", "drawable/ic_chat"), plain names are icons.
+     * resolves with the names that could not be found.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void preloadResources(ReadableArray names, Promise promise) {
+        WritableArray missing = Arguments.createArray();
+        for (int i=0; i<names.size(); i++) {
+            String name = names.getString(i);
+            if (name == null) continue;
+            if (!ResourceCache.preload(getReactApplicationContext(), name)) {
+                Log.w("RNMoPushNotification", "preloadResources " + name + " not found");
+                missing.pushString(name);
             }
-            notificationManager.createNotificationChannel(channel);
         }
+        promise.resolve(missing);
     }
 
     @SuppressWarnings("unused")
@@ -244,9 +300,23 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
             NotificationManager notificationManager = (NotificationManager) getReactApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
             if (notificationManager == null) return;
             notificationManager.deleteNotificationChannel(id);
+            ChannelRegistry.onChannelDeleted(id);
         }
     }
 
+    /**
+     * hit / miss counters of the native channel registry
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getChannelRegistryStats(Promise promise) {
+        WritableMap res = Arguments.createMap();
+        res.putDouble("hits", ChannelRegistry.getHits());
+        res.putDouble("misses", ChannelRegistry.getMisses());
+        res.putInt("channels", ChannelRegistry.getSize());
+        promise.resolve(res);
+    }
+
     @SuppressWarnings("unused")
     @ReactMethod
     public void openNotificationSettings() {
@@ -289,10 +359,13 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
                 rs.putInt("lockscreenVisibility", channel.getLockscreenVisibility());
                 rs.putInt("lightColor", channel.getLightColor());
                 rs.putBoolean("bypassDnd", channel.canBypassDnd());
-                rs.putString("sound", channel.getSound().toString());
+                Uri sound = channel.getSound();
+                rs.putString("sound", sound != null ? sound.toString() : null);
                 res.pushMap(rs);
             }
             promise.resolve(res);
+        } else {
+            promise.resolve(Arguments.createArray());
         }
     }
 
@@ -300,7 +373,10 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
     @ReactMethod
     public void cancelNotification(int id) {
         NotificationManager notificationManager = Objects.requireNonNull(getReactApplicationContext().getSystemService(NotificationManager.class));
+        NotificationUpdater.forget(id);
+        GroupSummaries.onSummaryRemoved(getReactApplicationContext(), id);
         notificationManager.cancel(id);
+        PayloadStore.remove(getReactApplicationContext(), id);
         if (id == 0) {
             // if id is 0 android Q fails to cancel the notification.
             // however, if we send the notification with a tag it works.
@@ -325,219 +401,253 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
         promise.resolve(res);
     }
 
-    private Bundle createBundleForNotification(ReadableMap args, NotificationCompat.Builder builder, int notificationID) {
-        Bundle bundle = new Bundle();
-        bundle.putInt("id", notificationID);
-        if (args.hasKey("data")) {
-            ReadableMap a = args.getMap("data");
-            if (a != null) {
-                Bundle b = new Bundle();
-                this.readableMapToBundle(a, b);
-                bundle.putBundle("data", b);
-            }
-        }
-        bundle.putParcelable("notification", builder.build()); // ??
-        return bundle;
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void showNotification(ReadableMap args, Promise promise) {
+        NotificationPoster poster = new NotificationPoster(getReactApplicationContext());
+        promise.resolve(poster.post(args));
     }
 
-    private PendingIntent createPendingIntent(Bundle bundle, boolean background) {
+    /**
+     * update a posted notification with partial args, see NotificationUpdater.
+     * updates are merged and rate limited, the last one is always posted.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void updateNotification(int id, ReadableMap partial) {
         ReactApplicationContext context = getReactApplicationContext();
-        requestIDCounter++;
-        if (requestIDCounter == 65536) requestIDCounter = 1;
-        if (background) {
-            Intent intent = new Intent(context, ReactNativeMoPushNotificationReceiver.class);
-            intent.putExtra("ReactNativeMoPushNotification", bundle);
-            return PendingIntent.getBroadcast(
-                context,
-                requestIDCounter,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-        } else {
-            Intent intent = Objects.requireNonNull(context.getPackageManager().getLaunchIntentForPackage(context.getPackageName()));
-            intent.putExtra("ReactNativeMoPushNotification", bundle);
-            return PendingIntent.getActivity(
-                context,
-                requestIDCounter,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-            );
-        }
+        EventPipeline.post(() -> NotificationUpdater.update(context, id, partial));
     }
 
-    @SuppressLint("DiscouragedApi")
+    /**
+     * posts per second for updateNotification, 0 for no limit
+     */
     @SuppressWarnings("unused")
     @ReactMethod
-    public void showNotification(ReadableMap args, Promise promise) throws Exception {
-        NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)getReactApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE));
-        Resources resources = getReactApplicationContext().getResources();
-        String packageName = getReactApplicationContext().getPackageName();
+    public void setUpdateRateLimit(double postsPerSecond) {
+        NotificationUpdater.setRateLimit(postsPerSecond);
+    }
 
-        int notificationID = notificationIDCounter++;
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getUpdateStats(Promise promise) {
+        long[] stats = NotificationUpdater.getStats();
+        WritableMap res = Arguments.createMap();
+        res.putDouble("posted", stats[0]);
+        res.putDouble("skipped", stats[1]);
+        res.putDouble("pending", stats[2]);
+        promise.resolve(res);
+    }
 
-        String channelID = args.hasKey("channelID") ? args.getString("channelID") : null;
-        if (channelID == null) {
-            ApplicationInfo ai = getReactApplicationContext().getPackageManager().getApplicationInfo(getReactApplicationContext().getPackageName(), PackageManager.GET_META_DATA);
-            channelID = ai.metaData.getString("com.google.firebase.messaging.default_notification_channel_id", null);
-            if (channelID != null && verbose) Log.i("RNMoPushNotification", "showNotification firebase default channelID");
-        }
-        if (channelID == null) {
-            if (verbose) Log.i("RNMoPushNotification", "showNotification using default channelID");
-            channelID = "default";
-        }
+    /**
+     * native summaries for groupKey, see GroupSummaries
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setGroupSummaryOptions(ReadableMap args) {
+        GroupSummaries.setOptions(
+            getReactApplicationContext(),
+            !args.hasKey("enabled") || args.getBoolean("enabled"),
+            args.hasKey("maxLines") ? args.getInt("maxLines") : 5,
+            args.hasKey("collapseThreshold") ? args.getInt("collapseThreshold") : 0,
+            args.hasKey("summaryText") ? args.getString("summaryText") : "{{count}}"
+        );
+    }
 
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-            if (notificationManager.getNotificationChannel(channelID) == null) {
-                NotificationChannel channel;
-                channel = new NotificationChannel(channelID, channelID, NotificationManager.IMPORTANCE_HIGH);
-                channel.setName("default");
-                channel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
-                notificationManager.createNotificationChannel(channel);
-            }
-        }
+    /**
+     * notification templates by name, shown natively for data messages with
+     * a matching "template" field, see NotificationTemplates
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setNotificationTemplates(ReadableMap templates) {
+        NotificationTemplates.setTemplates(getReactApplicationContext(), new JSONObject(templates.toHashMap()));
+    }
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(getReactApplicationContext(), channelID);
-        if (args.hasKey("title")) {
-            builder.setContentTitle(args.getString("title"));
-        }
-        if (args.hasKey("body")) {
-            builder.setContentText(args.getString("body"));
-        }
-        if (args.hasKey("vibrate")) {
-            ReadableArray vibrate = args.getArray("vibrate");
-            if (vibrate != null) {
-                long[] pattern = new long[vibrate.size()];
-                for (int i=0; i<vibrate.size(); i++) pattern[i] = vibrate.getInt(i);
-                builder.setVibrate(pattern);
-            }
-        }
-        if (args.hasKey("priority")) {
-            builder.setPriority(args.getInt("priority"));
-        } else {
-            builder.setPriority(NotificationCompat.PRIORITY_HIGH);
-        }
-        if (args.hasKey("category")) {
-            builder.setCategory(args.getString("category"));
-        }
-        if (args.hasKey("number")) {
-            builder.setNumber(args.getInt("number"));
-        }
-        if (args.hasKey("colorized")) {
-            builder.setColorized(args.getBoolean("colorized"));
-        }
-        if (args.hasKey("visibility")) {
-            builder.setVisibility(args.getInt("visibility"));
-        } else {
-            builder.setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
-        }
-        if (args.hasKey("ticker")) {
-            builder.setTicker(args.getString("ticker"));
-        }
-        if (args.hasKey("subtext")) {
-            builder.setSubText(args.getString("subtext"));
-        }
-        if (args.hasKey("ongoing")) {
-            builder.setOngoing(args.getBoolean("ongoing"));
-        }
-        if (args.hasKey("lights")) {
-            ReadableMap a = args.getMap("lights");
-            if (a != null) {
-                builder.setLights(a.getInt("color"), a.getInt("on"), a.getInt("off"));
-            }
+    /**
+     * rules that keep messages from being shown, evaluated natively for
+     * every message, see SuppressionRules
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setSuppressionRules(ReadableArray rules, Promise promise) {
+        try {
+            SuppressionRules.setRules(getReactApplicationContext(), new JSONArray(rules.toArrayList()));
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject(e);
         }
-        if (args.hasKey("sound")) {
-            if ("default".equals(args.getString("sound"))) {
-                builder.setSound( RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION) );
-            } else {
-                int soundID = resources.getIdentifier(args.getString("sound"), "raw", packageName);
-                builder.setSound( Uri.parse(ContentResolver.SCHEME_ANDROID_RESOURCE + "://" + packageName + "/" + soundID) );
+    }
+
+    /**
+     * post a list of notifications with one call. resolves with one entry per
+     * item, either { id } or { error }, a failing item does not fail the batch.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void showNotifications(ReadableArray list, Promise promise) {
+        NotificationPoster poster = new NotificationPoster(getReactApplicationContext());
+        poster.reserve(list.size());
+        WritableArray res = Arguments.createArray();
+        for (int i=0; i<list.size(); i++) {
+            WritableMap rs = Arguments.createMap();
+            try {
+                rs.putInt("id", poster.post(Objects.requireNonNull(list.getMap(i))));
+            } catch (Exception e) {
+                Log.w("RNMoPushNotification", "showNotifications item " + i, e);
+                rs.putString("error", String.valueOf(e.getMessage()));
             }
+            res.pushMap(rs);
         }
-        if (args.hasKey("groupKey")) {
-            builder.setGroup(args.getString("groupKey"));
-        }
-        if (args.hasKey("data")) {
-            Bundle extras = new Bundle();
-            ReadableMap a = args.getMap("data");
-            this.readableMapToBundle(a, extras);
-            builder.setExtras(extras);
-        }
-        if (args.hasKey("smallIcon")) {
-            int iconID = resources.getIdentifier(args.getString("smallIcon"), "mipmap", packageName);
-            builder.setSmallIcon(iconID);
-        } else {
-            int iconID = resources.getIdentifier("ic_launcher", "mipmap", packageName);
-            builder.setSmallIcon(iconID);
+        promise.resolve(res);
+    }
+
+    /**
+     * limit and overflow policy ("dropOldest" / "dropNewest") of the queue for
+     * events that arrive before the react context is up. persisted, so it
+     * applies to cold starts as well.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setPendingEventsConfig(ReadableMap args) {
+        PendingEvents.setConfig(
+            getReactApplicationContext(),
+            args.hasKey("limit") ? args.getInt("limit") : 0,
+            args.hasKey("overflow") ? args.getString("overflow") : null
+        );
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getPendingEventsStats(Promise promise) {
+        WritableMap res = Arguments.createMap();
+        res.putInt("depth", PendingEvents.getDepth());
+        res.putInt("maxDepth", PendingEvents.getMaxDepth());
+        res.putDouble("enqueued", PendingEvents.getEnqueued());
+        res.putDouble("delivered", PendingEvents.getDelivered());
+        res.putDouble("dropped", PendingEvents.getDropped());
+        res.putInt("limit", PendingEvents.getLimit());
+        res.putString("overflow", PendingEvents.getOverflow());
+        promise.resolve(res);
+    }
+
+    /**
+     * emit events in batches: events are collected for windowMs (default 16)
+     * or until maxBatchSize (default 100) is reached and emitted as one
+     * ReactNativeMoPushNotificationBatch event.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setEventBatching(ReadableMap args) {
+        EventEmitter.setBatching(
+            args.hasKey("enabled") && args.getBoolean("enabled"),
+            args.hasKey("windowMs") ? (long)args.getDouble("windowMs") : 0,
+            args.hasKey("maxBatchSize") ? args.getInt("maxBatchSize") : 0
+        );
+    }
+
+    /**
+     * also drop messages with a collapse key that was already seen
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setDeduplicationOptions(ReadableMap args) {
+        if (args.hasKey("collapseKey")) {
+            MessageDeduplicator.setByCollapseKey(getReactApplicationContext(), args.getBoolean("collapseKey"));
         }
-        if (args.hasKey("autoCancel")) {
-            builder.setAutoCancel(args.getBoolean("autoCancel"));
-        } else {
-            builder.setAutoCancel(true); // removed if tapped
-        }
-
-        {
-            boolean background = args.hasKey("background") && args.getBoolean("background");
-            Bundle bundle = createBundleForNotification(args, builder, notificationID);
-            builder.setContentIntent(createPendingIntent(bundle, background));
-        }
-
-        if (args.hasKey("fullScreen") && args.getBoolean("fullScreen")) {
-            // @TODO: this should be another intent...
-            boolean background = args.hasKey("background") && args.getBoolean("background");
-            Bundle bundle = createBundleForNotification(args, builder, notificationID);
-            bundle.putString("action", "fullScreen");
-            PendingIntent pendingIntent = createPendingIntent(bundle, background);
-            builder.setFullScreenIntent(pendingIntent, true);
-        }
-
-        if (args.hasKey("actions")) {
-            ReadableArray actions = Objects.requireNonNull(args.getArray("actions"));
-            for (int i=0; i<actions.size(); i++) {
-                ReadableMap action = Objects.requireNonNull(actions.getMap(i));
-                Bundle bundle = createBundleForNotification(args, builder, notificationID);
-                boolean background = action.hasKey("background") && action.getBoolean("background");
-                bundle.putString("action", Objects.requireNonNull(action.getString("id")));
-                PendingIntent pendingIntent = createPendingIntent(bundle, background);
-                int iconID = resources.getIdentifier("ic_launcher", "mipmap", packageName);
-                if (action.hasKey("icon")) {
-                    iconID = resources.getIdentifier(action.getString("icon"), "mipmap", packageName);
-                }
-                CharSequence title;
-                if (action.hasKey("html")) {
-                    title = HtmlCompat.fromHtml(Objects.requireNonNull(action.getString("html")), HtmlCompat.FROM_HTML_MODE_LEGACY);
-                } else {
-                    title = Objects.requireNonNull(action.getString("title"));
-                }
-                NotificationCompat.Action.Builder actionBuilder = new NotificationCompat.Action.Builder(
-                        iconID,
-                        title,
-                        pendingIntent
-                );
-                if (action.hasKey("semanticAction")) {
-                    actionBuilder.setSemanticAction(action.getInt("semanticAction"));
-                }
-                if (action.hasKey("allowGeneratedReplies")) {
-                    actionBuilder.setAllowGeneratedReplies(action.getBoolean("allowGeneratedReplies"));
-                }
-                if (action.hasKey("showsUserInterface")) {
-                    actionBuilder.setShowsUserInterface(action.getBoolean("showsUserInterface"));
-                }
-                builder.addAction(actionBuilder.build());
+    }
+
+    /**
+     * latency histograms per delivery stage, see LatencyMetrics
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        promise.resolve(LatencyMetrics.getSnapshot());
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void resetMetrics() {
+        LatencyMetrics.reset();
+    }
+
+    /**
+     * emit onMetrics events every intervalMs, 0 to stop
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setMetricsInterval(double intervalMs) {
+        LatencyMetrics.setSnapshotInterval(getReactApplicationContext(), (long)intervalMs);
+    }
+
+    /**
+     * pass event data to js as one json string, see PayloadConverter
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setDataJsonMode(ReadableMap args) {
+        List<String> keys = new ArrayList<>();
+        ReadableArray a = args.hasKey("keys") ? args.getArray("keys") : null;
+        if (a != null) {
+            for (int i=0; i<a.size(); i++) {
+                keys.add(a.getString(i));
             }
         }
+        PayloadConverter.setDataJsonMode(getReactApplicationContext(), args.hasKey("all") && args.getBoolean("all"), keys);
+    }
 
-        notificationManager.notify(notificationID, builder.build());
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getDeduplicationStats(Promise promise) {
+        WritableMap res = Arguments.createMap();
+        res.putDouble("suppressed", MessageDeduplicator.getSuppressed());
+        res.putInt("size", MessageDeduplicator.getSize());
+        promise.resolve(res);
+    }
+
+    /**
+     * enable the on-disk journal of received events. journaled events carry a
+     * journalSeq and must be acknowledged with acknowledgeEvent once handled.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setJournalEnabled(boolean value) {
+        EventJournal.setEnabled(getReactApplicationContext(), value);
+    }
+
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void acknowledgeEvent(double journalSeq) {
+        EventJournal.acknowledge(getReactApplicationContext(), (long)journalSeq);
+    }
 
-        if (args.hasKey("turnScreenOn") && args.getBoolean("turnScreenOn")) {
-            PowerManager powerManager = Objects.requireNonNull(getReactApplicationContext().getSystemService(PowerManager.class));
-            if (!powerManager.isInteractive()) {
-                // PARTIAL_WAKE_LOCK is not sufficient.
-//                PowerManager.WakeLock wl = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,"notification:turnScreenOn");
-                PowerManager.WakeLock wl = powerManager.newWakeLock(PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,"notification:turnScreenOn");
-                wl.acquire(10 * 1000);
+    /**
+     * events journaled by an earlier process that were never acknowledged,
+     * i.e. because the process was killed before js was up.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void drainPendingEvents(Promise promise) {
+        // the journal and click payloads are read on the pipeline thread
+        EventPipeline.post(() -> {
+            WritableArray res = Arguments.createArray();
+            for (EventJournal.Entry entry : EventJournal.takeUnacknowledged(getReactApplicationContext())) {
+                WritableMap args;
+                if ("message".equals(entry.kind)) {
+                    args = ReactNativeMoPushNotificationFirebaseMessagingService.createReplayEvent(getReactApplicationContext(), entry.payload);
+                } else if ("click".equals(entry.kind)) {
+                    args = ReactNativeMoPushNotificationReceiver.createEvent(getReactApplicationContext(), entry.payload);
+                } else {
+                    Log.w("RNMoPushNotification", "drainPendingEvents unknown kind " + entry.kind);
+                    continue;
+                }
+                args.putDouble("journalSeq", entry.seq);
+                args.putBoolean("replayed", true);
+                res.pushMap(args);
             }
-        }
-        promise.resolve(notificationID);
+            promise.resolve(res);
+        });
     }
 
 //    @SuppressWarnings("unused")
@@ -560,59 +670,114 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
     public void acquireWakeLock(String tag, int timeout, Promise promise) {
         // @TODO: remove.
         try {
-            PowerManager powerManager = Objects.requireNonNull((PowerManager)getReactApplicationContext().getSystemService(Context.POWER_SERVICE));
-            PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
-                tag);
-            String key = "" + wakeLock.hashCode() + "-" + wakeLock.toString();
-            wakeLock.acquire(timeout);
-            this.wakeLocks.put(key, wakeLock);
-            promise.resolve(key);
+            promise.resolve(WakeLockRegistry.acquire(getReactApplicationContext(), tag, timeout));
         } catch (Exception e) {
             promise.reject(e);
         }
     }
 
+    /**
+     * like acquireWakeLock, but all holders of a tag share one wake lock
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void acquireSharedWakeLock(String tag, int timeout, Promise promise) {
+        try {
+            promise.resolve(WakeLockRegistry.acquireShared(getReactApplicationContext(), tag, timeout));
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    /**
+     * resolves with false if the key is unknown or the lock already expired
+     */
     @SuppressWarnings("unused")
     @ReactMethod
     public void releaseWakeLock(String key, Promise promise) {
-        PowerManager.WakeLock wakeLock = this.wakeLocks.remove(key);
-        if (wakeLock == null) return;
         try {
-            wakeLock.release();
-            promise.resolve(null);
+            promise.resolve(WakeLockRegistry.release(key));
         } catch (Exception e) {
             promise.reject(e);
         }
     }
 
-//    @SuppressWarnings("unused")
-//    @ReactMethod
-//    public void scheduleWakeup(ReadableMap args, Promise promise) {
-//        long time = (long)args.getDouble("time");
-//        if (ReactNativeMoPushNotification.verbose) {
-//            Log.i("RNMoPushNotification", "scheduleWakeup " + new Date(time).toString());
-//        }
-//        String test = args.getString("test");
-//        Bundle bundle = new Bundle();
-//        bundle.putBoolean("background", true);
-//        if (test != null) bundle.putString("test", test);
-//        bundle.putLong("time", time);
-//        PendingIntent pendingIntent = createPendingIntent(bundle, true);
-//        AlarmManager alarmManager = Objects.requireNonNull((AlarmManager)getReactApplicationContext().getSystemService(Context.ALARM_SERVICE));
-//        alarmManager.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
-//        promise.resolve(null);
-//    }
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getWakeLockStats(Promise promise) {
+        WritableMap res = Arguments.createMap();
+        WritableMap tags = Arguments.createMap();
+        long expired = 0;
+        for (Map.Entry<String, WakeLockRegistry.TagStats> entry : WakeLockRegistry.getStats().entrySet()) {
+            WakeLockRegistry.TagStats stats = entry.getValue();
+            WritableMap rs = Arguments.createMap();
+            rs.putDouble("acquired", stats.acquired);
+            rs.putDouble("released", stats.released);
+            rs.putDouble("expired", stats.expired);
+            rs.putDouble("heldMs", stats.heldMs);
+            rs.putInt("active", stats.active);
+            tags.putMap(entry.getKey(), rs);
+            expired += stats.expired;
+        }
+        res.putInt("active", WakeLockRegistry.getActiveCount());
+        res.putDouble("expired", expired);
+        res.putMap("tags", tags);
+        promise.resolve(res);
+    }
+
+    /**
+     * post a notification (args as for showNotification) at time, ms since
+     * epoch, also if the app is not running. resolves with the id, which is
+     * also the id of the notification.
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void scheduleNotification(ReadableMap args, double time, Promise promise) {
+        if (verbose) Log.i("RNMoPushNotification", "scheduleNotification " + new Date((long)time));
+        try {
+            promise.resolve(ScheduledNotifications.schedule(getReactApplicationContext(), args, (long)time));
+        } catch (Exception e) {
+            promise.reject(e);
+        }
+    }
+
+    /**
+     * resolves false if id was not scheduled or already posted
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void cancelScheduled(int id, Promise promise) {
+        promise.resolve(ScheduledNotifications.cancel(getReactApplicationContext(), id));
+    }
+
+    /**
+     * all scheduled notifications, ordered by time: { id, time, args }
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void getScheduled(Promise promise) {
+        WritableArray res = Arguments.createArray();
+        for (Bundle item : ScheduledNotifications.getAll(getReactApplicationContext())) {
+            res.pushMap(PayloadConverter.toWritableMap(item));
+        }
+        promise.resolve(res);
+    }
+
+    /**
+     * start js after a reboot. native state is restored without it, see
+     * ReactNativeMoPushNotificationBootReceiver
+     */
+    @SuppressWarnings("unused")
+    @ReactMethod
+    public void setStartOnBoot(boolean arg, Promise promise) {
+        if (ReactNativeMoPushNotification.verbose) {
+            Log.i("RNMoPushNotification", "setStartOnBoot " + arg);
+        }
+        SharedPreferences sharedPreferences = getReactApplicationContext().getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+        sharedPreferences.edit().putBoolean("startOnBoot", arg).apply();
+        promise.resolve(null);
+    }
 
-//    @SuppressWarnings("unused")
-//    @ReactMethod
-//    public void setStartOnBoot(boolean arg, Promise promise) {
-//        if (ReactNativeMoPushNotification.verbose) {
-//            Log.i("RNMoPushNotification", "setStartOnBoot " + arg);
-//        }
-//        SharedPreferences sharedPreferences = getReactApplicationContext().getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
-//        sharedPreferences.edit().putBoolean("startOnBoot", arg).apply();
-//        promise.resolve(null);
-//    }
     @Override
     public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
       Log.i("XXX", "onActivityResult " + requestCode + " " + resultCode);
@@ -624,31 +789,24 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
 
         if (intent.hasExtra("ReactNativeMoPushNotification")) {
             Bundle bundle = Objects.requireNonNull(intent.getBundleExtra("ReactNativeMoPushNotification"));
-            Bundle data = bundle.getBundle("data");
-            Notification notification = bundle.getParcelable("notification");
-            WritableMap args = Arguments.createMap();
-            args.putString("type", "onNotificationClicked");
-            args.putInt("id", bundle.getInt("id", 0));
-            if (data != null) {
-                args.putMap("data", Arguments.fromBundle(data));
-            }
-            if (bundle.containsKey("action")) {
-                args.putString("action", bundle.getString("action"));
-            }
-            if (notification != null) {
-                ReactNativeMoPushNotification.notificationToMap(notification, args);
-            }
-            getReactApplicationContext().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotification", args);
+            // the payload may have to be read from disk, not on the main thread
+            EventPipeline.post(() -> {
+                GroupSummaries.onSummaryRemoved(getReactApplicationContext(), bundle.getInt("id", 0));
+                WritableMap args = ReactNativeMoPushNotificationReceiver.createEvent(getReactApplicationContext(), bundle);
+                EventEmitter.emit(getReactApplicationContext(), args);
+            });
         }
 
         if (intent.hasExtra("google.message_id")) {
             // no way to get existing notification / title etc.
             Bundle extras = Objects.requireNonNull(intent.getExtras());
+            // the same intent is seen again i.e. when the module is recreated
+            if (MessageDeduplicator.isDuplicate(getReactApplicationContext(), MessageDeduplicator.NAMESPACE_INTENT, extras.getString("google.message_id"), null, 0)) {
+                return;
+            }
             if (verbose) {
                 Log.i("RNMoPushNotification", "onNewIntent " + intent.getAction() + " " + extras);
-                for (String k : extras.keySet()) {
-                    Log.i("RNMoPushNotification", "[" + k + "] = " + extras.get(k));
-                }
+                PayloadConverter.log("", extras);
             }
             WritableMap args = Arguments.createMap();
             args.putString("type", "onNotificationIntent");
@@ -658,13 +816,8 @@ public class ReactNativeMoPushNotification extends ReactContextBaseJavaModule im
             // google.sent_time
             // google.ttl
             // google.original_priority
-            WritableMap data = Arguments.createMap();
-            for (String k : extras.keySet()) {
-                if (k.startsWith("google.") || k.startsWith("android.") || k.equals("from") || k.equals("collapse_key")) continue;
-                data.putString(k, extras.getString(k));
-            }
-            args.putMap("data", data);
-            getReactApplicationContext().getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotification", args);
+            PayloadConverter.putData(getReactApplicationContext(), args, extras, true);
+            EventEmitter.emit(getReactApplicationContext(), args);
         }
     }
 
@@ -0,0 +1,29 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * the single alarm of ScheduledNotifications, posts the entries that are due
+ */
+public class ReactNativeMoPushNotificationAlarmReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (ReactNativeMoPushNotification.verbose) {
+            Log.i("RNMoPushNotification", "AlarmReceiver onReceive");
+        }
+        Context appContext = context.getApplicationContext();
+        PendingResult pendingResult = goAsync();
+        EventPipeline.post(() -> {
+            try {
+                ScheduledNotifications.postDue(appContext);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+}
@@ -4,40 +4,97 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import com.facebook.react.ReactApplication;
 import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.bridge.ReactContext;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * restores native state after a reboot or an app update (alarm of the
+ * scheduled notifications, journal, id counters) on the pipeline thread,
+ * without starting js. js is only started if startOnBoot is set or a
+ * registered BootTask asks for it.
+ */
 public class ReactNativeMoPushNotificationBootReceiver extends BroadcastReceiver  {
 
+    /**
+     * native work to run on boot, called on the background event thread
+     */
+    public interface BootTask {
+        /**
+         * return true if js has to be started
+         */
+        boolean run(@NonNull Context context);
+    }
+
+    private static final List<BootTask> bootTasks = new CopyOnWriteArrayList<>();
+
+    /**
+     * register in Application.onCreate, it runs before the receiver
+     */
+    @SuppressWarnings({"unused"})
+    public static void addBootTask(BootTask task) {
+        bootTasks.add(task);
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) return;
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction()) && !Intent.ACTION_MY_PACKAGE_REPLACED.equals(intent.getAction())) return;
 
         if (ReactNativeMoPushNotification.verbose) {
-            Log.i("RNMoPushNotification", "BootReceiver onReceive");
+            Log.i("RNMoPushNotification", "BootReceiver onReceive " + intent.getAction());
         }
 
-        // @TODO: always?
+        Context appContext = context.getApplicationContext();
+        PendingResult pendingResult = goAsync();
+        EventPipeline.post(() -> {
+            try {
+                boolean startJS = restore(appContext);
+                if (startJS) {
+                    EventPipeline.postMain(() -> startReactContext(appContext));
+                }
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    /**
+     * returns true if js has to be started
+     */
+    private static boolean restore(Context context) {
+        IdAllocator.restore(context);
+        ScheduledNotifications.restore(context);
+        EventJournal.restore(context);
         SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
-        if (!sharedPreferences.getBoolean("startOnBoot", false)) {
-            return;
+        boolean res = sharedPreferences.getBoolean("startOnBoot", false);
+        for (BootTask task : bootTasks) {
+            try {
+                res |= task.run(context);
+            } catch (Exception e) {
+                Log.e("RNMoPushNotification", "BootTask failed", e);
+            }
+        }
+        if (ReactNativeMoPushNotification.verbose) {
+            Log.i("RNMoPushNotification", "BootReceiver restored, " + ScheduledNotifications.getCount(context) + " scheduled, " + EventJournal.getOpenCount() + " journaled, startJS=" + res);
         }
+        return res;
+    }
 
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.post(() -> {
-            ReactInstanceManager reactInstanceManager = ((ReactApplication)context.getApplicationContext()).getReactNativeHost().getReactInstanceManager();
-            ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
-            if (reactContext == null) {
-                if (!reactInstanceManager.hasStartedCreatingInitialContext()) {
-                    reactInstanceManager.createReactContextInBackground();
-                }
+    private static void startReactContext(Context context) {
+        ReactInstanceManager reactInstanceManager = ((ReactApplication)context).getReactNativeHost().getReactInstanceManager();
+        ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
+        if (reactContext == null) {
+            if (!reactInstanceManager.hasStartedCreatingInitialContext()) {
+                reactInstanceManager.createReactContextInBackground();
             }
-        });
+        }
     }
 
 }
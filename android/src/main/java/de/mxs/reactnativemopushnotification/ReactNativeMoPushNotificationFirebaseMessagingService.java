@@ -1,24 +1,28 @@
 package de.mxs.reactnativemopushnotification;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import com.facebook.react.ReactApplication;
-import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.Map;
-
 public final class ReactNativeMoPushNotificationFirebaseMessagingService extends FirebaseMessagingService {
 
+    /** journaled with a message once it was shown from a template or suppressed */
+    private static final String JOURNAL_NOTIFICATION_ID = "rnmopushnotification.notificationID";
+    private static final String JOURNAL_SUPPRESSED_BY = "rnmopushnotification.suppressedBy";
+
+    /**
+     * onMessageReceived is called on the background event thread
+     */
     @SuppressWarnings({"WeakerAccess", "unused"})
     public static abstract class Hook {
         public void onMessageReceived(@NonNull RemoteMessage var1) {
@@ -33,7 +37,7 @@ public final class ReactNativeMoPushNotificationFirebaseMessagingService extends
         }
     }
 
-    private static Hook hook;
+    private static volatile Hook hook;
 
     @SuppressWarnings({"unused"})
     public static void setHook(Hook val) {
@@ -52,30 +56,95 @@ public final class ReactNativeMoPushNotificationFirebaseMessagingService extends
     @Override
     public void onMessageReceived(final @NonNull RemoteMessage remoteMessage) {
         super.onMessageReceived(remoteMessage);
-        if (hook != null) {
-            hook.onMessageReceived(remoteMessage);
+        final long receivedAt = SystemClock.elapsedRealtime();
+        if (remoteMessage.getSentTime() > 0) {
+            LatencyMetrics.record(LatencyMetrics.STAGE_TRANSIT, System.currentTimeMillis() - remoteMessage.getSentTime());
         }
 
         if (ReactNativeMoPushNotification.verbose) {
             Log.i("RNMoPushNotification", "onMessageReceived " + remoteMessage);
         }
 
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.post(() -> {
-            ReactInstanceManager reactInstanceManager = ((ReactApplication)getApplication()).getReactNativeHost().getReactInstanceManager();
-            ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
-            if (reactContext != null) {
-                handleMessage(remoteMessage, reactContext);
-            } else {
-                reactInstanceManager.addReactInstanceEventListener(reactContextNew -> handleMessage(remoteMessage, reactContextNew));
-                if (!reactInstanceManager.hasStartedCreatingInitialContext()) {
-                    reactInstanceManager.createReactContextInBackground();
-                }
+        if (MessageDeduplicator.isDuplicate(this, MessageDeduplicator.NAMESPACE_MESSAGE, remoteMessage.getMessageId(), remoteMessage.getCollapseKey(), remoteMessage.getSentTime())) {
+            return;
+        }
+
+        long journalSeq = 0;
+        Bundle journalExtras = null;
+        if (EventJournal.isEnabled(this)) {
+            journalExtras = remoteMessage.toIntent().getExtras();
+            if (journalExtras != null) {
+                journalSeq = EventJournal.append(this, "message", journalExtras);
+            }
+        }
+        final long seq = journalSeq;
+        final Bundle extras = journalExtras;
+
+        // everything else happens on the pipeline thread
+        Context context = getApplicationContext();
+        EventPipeline.post(() -> {
+            LatencyMetrics.record(LatencyMetrics.STAGE_HANDOFF, SystemClock.elapsedRealtime() - receivedAt);
+            if (hook != null) {
+                hook.onMessageReceived(remoteMessage);
             }
+            ReadableMap templateArgs = renderTemplate(context, remoteMessage);
+            String suppressedBy = SuppressionRules.match(context, remoteMessage.getData(), getChannelID(context, remoteMessage, templateArgs));
+            int notificationID = templateArgs != null && suppressedBy == null ? showTemplate(context, templateArgs, receivedAt) : 0;
+            // js does not need to start for a message that was handled by a template
+            boolean handled = templateArgs != null && (notificationID != 0 || suppressedBy != null);
+            if (seq > 0 && (notificationID != 0 || suppressedBy != null)) {
+                // a replay must not show it again
+                if (notificationID != 0) extras.putInt(JOURNAL_NOTIFICATION_ID, notificationID);
+                if (suppressedBy != null) extras.putString(JOURNAL_SUPPRESSED_BY, suppressedBy);
+                EventJournal.update(context, seq, "message", extras);
+            }
+            PendingEvents.dispatch(context, (reactContext, queued) -> {
+                handleMessage(remoteMessage, reactContext, seq, receivedAt, queued, notificationID, suppressedBy);
+            }, !handled);
         });
     }
 
-    private void handleMessage(RemoteMessage remoteMessage, ReactContext context) {
+    private static ReadableMap renderTemplate(Context context, RemoteMessage remoteMessage) {
+        try {
+            return NotificationTemplates.render(context, remoteMessage.getData());
+        } catch (Exception e) {
+            Log.e("RNMoPushNotification", "renderTemplate failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * the channel the message would be shown on, for suppression rules:
+     * the template channel, the notification channel, the channelID data
+     * field or the default channel
+     */
+    private static String getChannelID(Context context, RemoteMessage remoteMessage, ReadableMap templateArgs) {
+        if (templateArgs != null && templateArgs.hasKey("channelID") && templateArgs.getString("channelID") != null) {
+            return templateArgs.getString("channelID");
+        }
+        if (remoteMessage.getNotification() != null && remoteMessage.getNotification().getChannelId() != null) {
+            return remoteMessage.getNotification().getChannelId();
+        }
+        String res = remoteMessage.getData().get("channelID");
+        return res != null ? res : ChannelRegistry.getDefaultChannelID(context);
+    }
+
+    /**
+     * show a rendered notification template, returns the notification id or 0
+     */
+    private static int showTemplate(Context context, ReadableMap args, long receivedAt) {
+        try {
+            return new NotificationPoster(context).setReceivedAt(receivedAt).post(args);
+        } catch (Exception e) {
+            Log.e("RNMoPushNotification", "showTemplate failed", e);
+            return 0;
+        }
+    }
+
+    /**
+     * the onMessageReceived event for a message
+     */
+    static WritableMap createEvent(Context context, RemoteMessage remoteMessage) {
         WritableMap args = Arguments.createMap();
         args.putString("type", "onMessageReceived");
         args.putString("from", remoteMessage.getFrom());
@@ -95,12 +164,52 @@ public final class ReactNativeMoPushNotificationFirebaseMessagingService extends
             args.putString("icon", remoteMessage.getNotification().getIcon());
             args.putString("tag", remoteMessage.getNotification().getTag());
         }
-        WritableMap data = Arguments.createMap();
-        for (Map.Entry<String, String> entry : remoteMessage.getData().entrySet()) {
-            data.putString(entry.getKey(), entry.getValue());
+        PayloadConverter.putData(context, args, remoteMessage.getData());
+        return args;
+    }
+
+    /**
+     * the onMessageReceived event for a journaled message, with the outcome
+     * of native handling that was journaled with it
+     */
+    static WritableMap createReplayEvent(Context context, Bundle extras) {
+        int notificationID = extras.getInt(JOURNAL_NOTIFICATION_ID, 0);
+        String suppressedBy = extras.getString(JOURNAL_SUPPRESSED_BY);
+        // not message data
+        extras.remove(JOURNAL_NOTIFICATION_ID);
+        extras.remove(JOURNAL_SUPPRESSED_BY);
+        WritableMap args = createEvent(context, new RemoteMessage(extras));
+        if (notificationID != 0) {
+            args.putInt("notificationID", notificationID);
+        }
+        if (suppressedBy != null) {
+            args.putBoolean("suppressed", true);
+            args.putString("suppressedBy", suppressedBy);
+        }
+        return args;
+    }
+
+    private void handleMessage(RemoteMessage remoteMessage, ReactContext context, long journalSeq, long receivedAt, boolean queued, int notificationID, String suppressedBy) {
+        long start = SystemClock.elapsedRealtime();
+        LatencyMetrics.record(queued ? LatencyMetrics.STAGE_CONTEXT_COLD : LatencyMetrics.STAGE_CONTEXT_WARM, start - receivedAt);
+        WritableMap args = createEvent(context, remoteMessage);
+        if (journalSeq > 0) {
+            args.putDouble("journalSeq", journalSeq);
+        }
+        args.putDouble("receivedAt", receivedAt);
+        if (notificationID != 0) {
+            args.putInt("notificationID", notificationID);
+        }
+        if (suppressedBy != null) {
+            args.putBoolean("suppressed", true);
+            args.putString("suppressedBy", suppressedBy);
+        }
+        LatencyMetrics.record(LatencyMetrics.STAGE_CONVERT, SystemClock.elapsedRealtime() - start);
+        EventEmitter.emit(context, args);
+        LatencyMetrics.record(LatencyMetrics.STAGE_EMIT, SystemClock.elapsedRealtime() - receivedAt);
+        if (remoteMessage.getSentTime() > 0) {
+            LatencyMetrics.record(LatencyMetrics.STAGE_END_TO_END, System.currentTimeMillis() - remoteMessage.getSentTime());
         }
-        args.putMap("data", data);
-        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotification", args);
     }
 
     @Override
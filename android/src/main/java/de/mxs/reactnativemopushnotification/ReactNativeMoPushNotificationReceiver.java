@@ -7,39 +7,34 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 
-import com.facebook.react.ReactApplication;
-import com.facebook.react.ReactInstanceManager;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 public class ReactNativeMoPushNotificationReceiver extends BroadcastReceiver {
 
-    private void sendEvent(ReactContext reactContext, Bundle bundle) {
+    /**
+     * the onNotificationClicked event for the bundle attached to a
+     * notification intent. the notification itself comes from the bundle
+     * ("payload", see PayloadStore) or the store, older intents carry the
+     * whole notification. call on the pipeline thread, see PayloadStore.get
+     */
+    static WritableMap createEvent(Context context, Bundle bundle) {
         Bundle data = bundle.getBundle("data");
         Notification notification = bundle.getParcelable("notification");
         if (ReactNativeMoPushNotification.verbose) {
             Log.i("RNMoPushNotification", "Receiver.sendEvent");
-            for (String k : bundle.keySet()) {
-                Log.i("RNMoPushNotification", "[" + k + "] = " + bundle.get(k));
-            }
-            if (data != null) {
-                for (String k : data.keySet()) {
-                    Log.i("RNMoPushNotification", "[data." + k + "] = " + data.get(k));
-                }
-            }
+            PayloadConverter.log("", bundle);
+            PayloadConverter.log("data.", data);
             if (notification != null) {
-                for (String k : notification.extras.keySet()) {
-                    Log.i("RNMoPushNotification", "[notification.extras." + k + "] = " + notification.extras.get(k));
-                }
+                PayloadConverter.log("notification.extras.", notification.extras);
             }
         }
         WritableMap args = Arguments.createMap();
         args.putString("type", "onNotificationClicked");
         args.putInt("id", bundle.getInt("id", 0));
         if (data != null) {
-            args.putMap("data", Arguments.fromBundle(data));
+            PayloadConverter.putData(context, args, data, false);
         }
         if (bundle.containsKey("action")) {
             args.putString("action", bundle.getString("action"));
@@ -47,7 +42,35 @@ public class ReactNativeMoPushNotificationReceiver extends BroadcastReceiver {
         if (notification != null) {
             ReactNativeMoPushNotification.notificationToMap(notification, args);
         }
-        reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit("ReactNativeMoPushNotification", args);
+        Bundle payload = bundle.getBundle("payload");
+        if (payload == null) {
+            payload = PayloadStore.get(context, bundle.getInt("id", 0));
+        }
+        if (payload != null) {
+            args.putString("title", payload.getString("title"));
+            args.putString("subtext", payload.getString("subtext"));
+            args.putString("body", payload.getString("body"));
+            if (payload.containsKey("number")) {
+                args.putInt("number", payload.getInt("number"));
+            }
+            if (payload.containsKey("color")) {
+                args.putInt("color", payload.getInt("color"));
+            }
+            args.putString("channelID", payload.getString("channelID"));
+            Bundle payloadData = payload.getBundle("data");
+            if (payloadData != null) {
+                PayloadConverter.putData(context, args, payloadData, false);
+            }
+        }
+        return args;
+    }
+
+    private void sendEvent(ReactContext reactContext, Bundle bundle, long journalSeq) {
+        WritableMap args = createEvent(reactContext, bundle);
+        if (journalSeq > 0) {
+            args.putDouble("journalSeq", journalSeq);
+        }
+        EventEmitter.emit(reactContext, args);
     }
 
     @Override
@@ -58,21 +81,25 @@ public class ReactNativeMoPushNotificationReceiver extends BroadcastReceiver {
         Bundle bundle = intent.getBundleExtra("ReactNativeMoPushNotification");
         if (bundle != null) {
             if (ReactNativeMoPushNotification.verbose) {
-                for (String k : bundle.keySet()) {
-                    Log.i("RNMoPushNotification", "[bundle." + k + "] = " + bundle.get(k));
-                }
+                PayloadConverter.log("bundle.", bundle);
             }
-
-            ReactInstanceManager reactInstanceManager = ((ReactApplication) context.getApplicationContext()).getReactNativeHost().getReactInstanceManager();
-            ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
-            if (reactContext != null) {
-                sendEvent(reactContext, bundle);
-            } else {
-                reactInstanceManager.addReactInstanceEventListener(reactContextNew -> sendEvent(reactContextNew, bundle));
-                if (!reactInstanceManager.hasStartedCreatingInitialContext()) {
-                    reactInstanceManager.createReactContextInBackground();
+            // group state and journal file i/o happen on the pipeline thread,
+            // not in onReceive
+            Context appContext = context.getApplicationContext();
+            EventPipeline.post(() -> {
+                // a group summary that was opened or dismissed
+                GroupSummaries.onSummaryRemoved(appContext, bundle.getInt("id", 0));
+                if (bundle.getBoolean("groupDismissed")) return;
+                if (EventJournal.isEnabled(appContext)) {
+                    // journal the payload as well, the store is bounded
+                    Bundle payload = PayloadStore.get(appContext, bundle.getInt("id", 0));
+                    if (payload != null) {
+                        bundle.putBundle("payload", payload);
+                    }
                 }
-            }
+                long journalSeq = EventJournal.append(appContext, "click", bundle);
+                PendingEvents.dispatch(appContext, (reactContext, queued) -> sendEvent(reactContext, bundle, journalSeq));
+            });
         }
     }
 }
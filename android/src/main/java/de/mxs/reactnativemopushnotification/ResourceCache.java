@@ -0,0 +1,118 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.annotation.SuppressLint;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * process wide cache for resource lookups by name. Resources.getIdentifier
+ * is slow and the same few icons and sounds are used for every notification.
+ * names that do not resolve are cached (and logged) as well.
+ */
+final class ResourceCache {
+
+    private static final ConcurrentHashMap<String, Integer> identifiers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Uri> sounds = new ConcurrentHashMap<>();
+    private static final Uri NO_SOUND = Uri.EMPTY;
+
+    private ResourceCache() {
+    }
+
+    @SuppressLint("DiscouragedApi")
+    private static int lookup(Context context, String name, String type) {
+        String key = type + "/" + name;
+        Integer id = identifiers.get(key);
+        if (id == null) {
+            id = context.getResources().getIdentifier(name, type, context.getPackageName());
+            identifiers.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * resource id for name and type (mipmap, drawable, raw), 0 if not found
+     */
+    static int getIdentifier(Context context, String name, String type) {
+        int id = lookup(context, name, type);
+        if (id == 0) {
+            Log.w("RNMoPushNotification", "resource " + type + "/" + name + " not found");
+        }
+        return id;
+    }
+
+    private static int lookupIcon(Context context, String name) {
+        int id = lookup(context, name, "mipmap");
+        if (id == 0) id = lookup(context, name, "drawable");
+        return id;
+    }
+
+    /**
+     * image resource id, looked up as mipmap and then drawable, 0 if not found
+     */
+    static int getImage(Context context, String name) {
+        int id = lookupIcon(context, name);
+        if (id == 0) {
+            Log.w("RNMoPushNotification", "image " + name + " not found");
+        }
+        return id;
+    }
+
+    /**
+     * icon resource id, looked up as mipmap and then drawable. falls back to
+     * ic_launcher and the application icon, so the result is always usable
+     * as a small icon.
+     */
+    static int getIcon(Context context, String name) {
+        if (name != null) {
+            int id = lookupIcon(context, name);
+            if (id != 0) return id;
+            Log.w("RNMoPushNotification", "icon " + name + " not found, using ic_launcher");
+        }
+        int id = lookupIcon(context, "ic_launcher");
+        if (id == 0) id = context.getApplicationInfo().icon;
+        return id;
+    }
+
+    /**
+     * sound uri for a raw resource name or "default", null if not found
+     */
+    static Uri getSound(Context context, String name) {
+        Uri uri = sounds.get(name);
+        if (uri == null) {
+            if ("default".equals(name)) {
+                uri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
+            } else {
+                int id = getIdentifier(context, name, "raw");
+                if (id != 0) {
+                    uri = Uri.parse(ContentResolver.SCHEME_ANDROID_RESOURCE + "://" + context.getPackageName() + "/" + id);
+                }
+            }
+            if (uri == null) uri = NO_SOUND;
+            sounds.put(name, uri);
+        }
+        return uri == NO_SOUND ? null : uri;
+    }
+
+    /**
+     * resolve a resource reference "type/name" (i.e. raw/ding), a plain name is
+     * treated as icon. returns false if it does not resolve.
+     */
+    static boolean preload(Context context, String ref) {
+        int idx = ref.indexOf('/');
+        if (idx < 0) {
+            return lookupIcon(context, ref) != 0;
+        }
+        String type = ref.substring(0, idx);
+        String name = ref.substring(idx + 1);
+        if (type.equals("raw")) {
+            return getSound(context, name) != null;
+        }
+        return lookup(context, name, type) != 0;
+    }
+
+}
@@ -0,0 +1,273 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.AlarmManager;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * local notifications posted at a given time, without js. every entry is
+ * one file named "time-id", so the queue ordered by due time is built from
+ * the file names alone, args are only read when an entry is due.
+ *
+ * only one alarm is set, for the first entry. when it fires up to
+ * MAX_PER_RUN due entries are posted and the alarm is set for the next one,
+ * so the number of entries is not limited by the alarms an app may set. if
+ * more are due (i.e. after a reboot) they follow RUN_INTERVAL later, so one
+ * broadcast stays short. the file of an entry is deleted once it was posted,
+ * an entry is posted again rather than lost if the process dies.
+ * the id of an entry is the id of the notification that is posted.
+ */
+final class ScheduledNotifications {
+
+    static final class Entry implements Comparable<Entry> {
+        final long time;
+        final int id;
+
+        Entry(long time, int id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        String getFileName() {
+            return time + "-" + id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (time != other.time) return Long.compare(time, other.time);
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    private static final int MAX_PER_RUN = 20;
+    private static final long RUN_INTERVAL = 1000;
+
+    private static File dir;
+    private static TreeSet<Entry> queue;
+    /** queued entries and the ones being posted */
+    private static Map<Integer, Entry> byID;
+    private static long alarmTime = 0;
+    private static long notBefore = 0;
+    private static int inFlight = 0;
+
+    private ScheduledNotifications() {
+    }
+
+    private static void load(Context context) {
+        if (queue != null) return;
+        queue = new TreeSet<>();
+        byID = new HashMap<>();
+        dir = new File(context.getNoBackupFilesDir(), "rnmopushnotification.scheduled");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w("RNMoPushNotification", "ScheduledNotifications cannot create " + dir);
+            return;
+        }
+        String[] names = dir.list();
+        if (names == null) return;
+        for (String name : names) {
+            int sep = name.indexOf('-');
+            try {
+                Entry entry = new Entry(Long.parseLong(name.substring(0, sep)), Integer.parseInt(name.substring(sep + 1)));
+                queue.add(entry);
+                byID.put(entry.id, entry);
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                //noinspection ResultOfMethodCallIgnored
+                new File(dir, name).delete();
+            }
+        }
+    }
+
+    /**
+     * store args (as for showNotification) to be posted at time (ms since
+     * epoch), returns the id
+     */
+    static synchronized int schedule(Context context, ReadableMap args, long time) throws IOException {
+        load(context);
+        Entry entry = new Entry(time, IdAllocator.nextNotificationID(context));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, entry.getFileName()))))) {
+            BundleCodec.writeBundle(out, PayloadConverter.toBundle(args));
+        }
+        queue.add(entry);
+        byID.put(entry.id, entry);
+        updateAlarm(context);
+        return entry.id;
+    }
+
+    /**
+     * false if id is not scheduled (anymore)
+     */
+    static synchronized boolean cancel(Context context, int id) {
+        load(context);
+        Entry entry = byID.remove(id);
+        if (entry == null) return false;
+        queue.remove(entry);
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir, entry.getFileName()).delete();
+        updateAlarm(context);
+        return true;
+    }
+
+    private static Bundle read(Entry entry) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir, entry.getFileName()))))) {
+            return BundleCodec.readBundle(in);
+        } catch (IOException e) {
+            Log.w("RNMoPushNotification", "ScheduledNotifications read " + entry.getFileName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * all entries ordered by time, with args
+     */
+    static synchronized List<Bundle> getAll(Context context) {
+        load(context);
+        List<Bundle> res = new ArrayList<>(queue.size());
+        for (Entry entry : queue) {
+            Bundle args = read(entry);
+            if (args == null) continue;
+            Bundle item = new Bundle();
+            item.putInt("id", entry.id);
+            item.putDouble("time", entry.time);
+            item.putBundle("args", args);
+            res.add(item);
+        }
+        return res;
+    }
+
+    static synchronized int getCount(Context context) {
+        load(context);
+        return queue.size();
+    }
+
+    /**
+     * post up to MAX_PER_RUN entries that are due and set the alarm for the
+     * next ones. returns the number of posted notifications.
+     */
+    static int postDue(Context context) {
+        List<Entry> due = new ArrayList<>();
+        List<Bundle> dueArgs = new ArrayList<>();
+        synchronized (ScheduledNotifications.class) {
+            load(context);
+            long now = System.currentTimeMillis();
+            while (!queue.isEmpty() && queue.first().time <= now && due.size() < MAX_PER_RUN) {
+                Entry entry = queue.pollFirst();
+                Bundle args = read(entry);
+                if (args == null) {
+                    byID.remove(entry.id);
+                    //noinspection ResultOfMethodCallIgnored
+                    new File(dir, entry.getFileName()).delete();
+                    continue;
+                }
+                due.add(entry);
+                dueArgs.add(args);
+            }
+            // the remaining due entries follow with the next alarm, which also
+            // retries this run if the process dies before it is done
+            inFlight += due.size();
+            boolean more = inFlight > 0 || (!queue.isEmpty() && queue.first().time <= now);
+            notBefore = more ? now + RUN_INTERVAL : 0;
+            // the alarm that fired is gone
+            alarmTime = 0;
+            updateAlarm(context);
+        }
+        if (due.isEmpty()) return 0;
+        NotificationPoster poster = new NotificationPoster(context);
+        int res = 0;
+        for (int i=0; i<due.size(); i++) {
+            Entry entry = due.get(i);
+            synchronized (ScheduledNotifications.class) {
+                if (!byID.containsKey(entry.id)) {
+                    inFlight--;
+                    continue;
+                }
+            }
+            try {
+                poster.post(PayloadConverter.toReadableMap(dueArgs.get(i)), entry.id);
+                res++;
+            } catch (Exception e) {
+                Log.e("RNMoPushNotification", "scheduled notification " + entry.id + " failed", e);
+            }
+            synchronized (ScheduledNotifications.class) {
+                inFlight--;
+                //noinspection ResultOfMethodCallIgnored
+                new File(dir, entry.getFileName()).delete();
+                if (byID.remove(entry.id) == null) {
+                    // cancelled while it was posted
+                    NotificationUpdater.forget(entry.id);
+                    Objects.requireNonNull((NotificationManager)context.getSystemService(Context.NOTIFICATION_SERVICE)).cancel(entry.id);
+                    PayloadStore.remove(context, entry.id);
+                }
+            }
+        }
+        synchronized (ScheduledNotifications.class) {
+            updateAlarm(context);
+        }
+        if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "posted " + res + " scheduled notifications");
+        return res;
+    }
+
+    /**
+     * set the alarm again, it does not survive a reboot
+     */
+    static synchronized void restore(Context context) {
+        load(context);
+        alarmTime = 0;
+        updateAlarm(context);
+    }
+
+    private static PendingIntent createAlarmIntent(Context context, int flags) {
+        Intent intent = new Intent(context, ReactNativeMoPushNotificationAlarmReceiver.class);
+        return PendingIntent.getBroadcast(context, 0, intent, flags | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * one alarm for the first entry, only touched if that changed
+     */
+    private static void updateAlarm(Context context) {
+        long next = queue.isEmpty() ? 0 : Math.max(queue.first().time, notBefore);
+        // entries that are being posted only exist as files until they are out
+        if (inFlight > 0 && (next == 0 || notBefore < next)) next = notBefore;
+        if (next == alarmTime) return;
+        AlarmManager alarmManager = Objects.requireNonNull((AlarmManager)context.getSystemService(Context.ALARM_SERVICE));
+        if (next == 0) {
+            PendingIntent pendingIntent = createAlarmIntent(context, PendingIntent.FLAG_NO_CREATE);
+            if (pendingIntent != null) {
+                alarmManager.cancel(pendingIntent);
+                pendingIntent.cancel();
+            }
+        } else {
+            PendingIntent pendingIntent = createAlarmIntent(context, PendingIntent.FLAG_UPDATE_CURRENT);
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next, pendingIntent);
+            } else {
+                // without SCHEDULE_EXACT_ALARM the system may delay it a bit
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, next, pendingIntent);
+            }
+        }
+        alarmTime = next;
+        if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "scheduled alarm " + next + ", " + queue.size() + " entries");
+    }
+
+}
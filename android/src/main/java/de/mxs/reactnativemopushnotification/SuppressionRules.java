@@ -0,0 +1,123 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rules set by js that keep messages from being shown, evaluated natively
+ * for every message. a rule matches if all of its conditions hold:
+ * data (fields that must be equal), channelID and foreground (only while
+ * the app is in the foreground). rules without conditions never match.
+ */
+final class SuppressionRules {
+
+    private static final class Rule {
+        String id;
+        String[] dataKeys;
+        String[] dataValues;
+        String channelID;
+        boolean foreground;
+
+        boolean isEmpty() {
+            return dataKeys.length == 0 && channelID == null && !foreground;
+        }
+    }
+
+    private static volatile Rule[] rules;
+
+    private SuppressionRules() {
+    }
+
+    private static Rule[] parse(String json) throws JSONException {
+        JSONArray array = new JSONArray(json);
+        List<Rule> res = new ArrayList<>();
+        for (int i=0; i<array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            Rule rule = new Rule();
+            rule.id = item.optString("id", String.valueOf(i));
+            JSONObject data = item.optJSONObject("data");
+            int count = data != null ? data.length() : 0;
+            rule.dataKeys = new String[count];
+            rule.dataValues = new String[count];
+            if (data != null) {
+                Iterator<String> it = data.keys();
+                for (int j=0; it.hasNext(); j++) {
+                    rule.dataKeys[j] = it.next();
+                    rule.dataValues[j] = data.getString(rule.dataKeys[j]);
+                }
+            }
+            rule.channelID = item.has("channelID") ? item.getString("channelID") : null;
+            rule.foreground = item.optBoolean("foreground", false);
+            if (!rule.isEmpty()) res.add(rule);
+        }
+        return res.toArray(new Rule[0]);
+    }
+
+    private static Rule[] getRules(Context context) {
+        Rule[] res = rules;
+        if (res != null) return res;
+        synchronized (SuppressionRules.class) {
+            if (rules == null) {
+                String json = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).getString("suppressionRules", null);
+                rules = new Rule[0];
+                if (json != null) {
+                    try {
+                        rules = parse(json);
+                    } catch (JSONException e) {
+                        Log.w("RNMoPushNotification", "SuppressionRules load", e);
+                    }
+                }
+            }
+            return rules;
+        }
+    }
+
+    /**
+     * replaces all rules, persisted
+     */
+    static synchronized void setRules(Context context, JSONArray value) throws JSONException {
+        rules = parse(value.toString());
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putString("suppressionRules", value.toString())
+            .apply();
+    }
+
+    private static boolean isForeground() {
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(info);
+        return info.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+    }
+
+    /**
+     * the id of the first matching rule, null if the message may be shown
+     */
+    static String match(Context context, Map<String, String> data, String channelID) {
+        Boolean foreground = null;
+        for (Rule rule : getRules(context)) {
+            if (rule.channelID != null && !rule.channelID.equals(channelID)) continue;
+            boolean dataMatches = true;
+            for (int i=0; i<rule.dataKeys.length && dataMatches; i++) {
+                dataMatches = rule.dataValues[i].equals(data.get(rule.dataKeys[i]));
+            }
+            if (!dataMatches) continue;
+            if (rule.foreground) {
+                if (foreground == null) foreground = isForeground();
+                if (!foreground) continue;
+            }
+            if (ReactNativeMoPushNotification.verbose) Log.i("RNMoPushNotification", "suppressed by rule " + rule.id);
+            return rule.id;
+        }
+        return null;
+    }
+
+}
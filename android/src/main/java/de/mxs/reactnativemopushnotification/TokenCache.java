@@ -0,0 +1,138 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.google.firebase.installations.FirebaseInstallations;
+import com.google.firebase.installations.InstallationTokenResult;
+
+/**
+ * the token of getFirebaseInstanceId (a firebase installations auth token),
+ * persisted with its expiry so js gets it as a module constant on launch.
+ *
+ * a token that expires within REFRESH_MARGIN is not handed out, it is
+ * refreshed in the background instead. while the process runs a refresh is
+ * also scheduled before the expiry, a changed token is emitted as
+ * onTokenChanged while js is running.
+ */
+final class TokenCache {
+
+    private static final long REFRESH_MARGIN = 60 * 60 * 1000;
+
+    private static volatile String token;
+    private static long expiresAt = 0;
+    private static boolean loaded = false;
+    private static boolean refreshing = false;
+    private static Context appContext;
+    private static final Runnable refreshRunnable = () -> refresh(appContext);
+
+    private TokenCache() {
+    }
+
+    private static void load(Context context) {
+        if (loaded) return;
+        loaded = true;
+        SharedPreferences sharedPreferences = context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE);
+        token = sharedPreferences.getString("token", null);
+        expiresAt = sharedPreferences.getLong("tokenExpiresAt", 0);
+    }
+
+    /**
+     * the cached token, null if there is none or it is about to expire (a
+     * refresh is started then)
+     */
+    static synchronized String get(Context context) {
+        load(context);
+        if (token == null) return null;
+        if (System.currentTimeMillis() >= expiresAt - REFRESH_MARGIN) {
+            refresh(context);
+            return null;
+        }
+        scheduleRefresh(context);
+        return token;
+    }
+
+    /**
+     * the expiry of a token result in ms since epoch
+     */
+    static long getExpiresAt(InstallationTokenResult res) {
+        long value = res.getTokenExpirationTimestamp();
+        // seconds in current versions of firebase installations
+        return value < 100000000000L ? value * 1000 : value;
+    }
+
+    /**
+     * returns true if the token changed
+     */
+    static synchronized boolean set(Context context, String value, long valueExpiresAt) {
+        load(context);
+        if (value == null) return false;
+        boolean changed = !value.equals(token);
+        token = value;
+        expiresAt = valueExpiresAt;
+        context.getSharedPreferences("de.mxs.reactnativemopushnotification", Context.MODE_PRIVATE).edit()
+            .putString("token", value)
+            .putLong("tokenExpiresAt", valueExpiresAt)
+            .apply();
+        scheduleRefresh(context);
+        return changed;
+    }
+
+    private static void scheduleRefresh(Context context) {
+        appContext = context.getApplicationContext();
+        EventPipeline.getHandler().removeCallbacks(refreshRunnable);
+        long delay = expiresAt - REFRESH_MARGIN - System.currentTimeMillis();
+        EventPipeline.getHandler().postDelayed(refreshRunnable, Math.max(delay, 0));
+    }
+
+    /**
+     * fetch the token again, emits onTokenChanged if it changed
+     */
+    static void refresh(Context context) {
+        Context appContext = context.getApplicationContext();
+        synchronized (TokenCache.class) {
+            if (refreshing) return;
+            refreshing = true;
+        }
+        FirebaseInstallations firebaseInstallations;
+        try {
+            firebaseInstallations = FirebaseInstallations.getInstance();
+        } catch (IllegalStateException e) {
+            Log.i("RNMoPushNotification", "TokenCache refresh: firebase not set up");
+            synchronized (TokenCache.class) {
+                refreshing = false;
+            }
+            return;
+        }
+        // installations refreshes a token that expires within an hour itself
+        firebaseInstallations.getToken(false).addOnSuccessListener(res -> {
+            boolean changed;
+            synchronized (TokenCache.class) {
+                refreshing = false;
+                changed = set(appContext, res.getToken(), getExpiresAt(res));
+            }
+            if (changed) EventPipeline.post(() -> emit(appContext, res.getToken()));
+        }).addOnFailureListener(ex -> {
+            synchronized (TokenCache.class) {
+                refreshing = false;
+            }
+            Log.i("RNMoPushNotification", "TokenCache refresh", ex);
+        });
+    }
+
+    private static void emit(Context context, String value) {
+        ReactContext reactContext = ((ReactApplication)context).getReactNativeHost().getReactInstanceManager().getCurrentReactContext();
+        // js reads the constant on the next start otherwise
+        if (reactContext == null || !reactContext.hasActiveCatalystInstance()) return;
+        WritableMap args = Arguments.createMap();
+        args.putString("type", "onTokenChanged");
+        args.putString("token", value);
+        EventEmitter.emit(reactContext, args);
+    }
+
+}
@@ -0,0 +1,219 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * wake locks handed out to js, by generated key. shared locks are reference
+ * counted, all holders of a tag use one wake lock. locks that time out
+ * before they are released are removed by a sweeper and counted as expired
+ * per tag, together with the time they were held.
+ * the stats count wake locks, not keys.
+ */
+final class WakeLockRegistry {
+
+    private static final long SWEEP_INTERVAL = 30 * 1000;
+
+    private static final class Lock {
+        final String tag;
+        final PowerManager.WakeLock wakeLock;
+        final long acquiredAt;
+        long expiresAt;
+        int refCount = 1;
+        final boolean shared;
+
+        Lock(String tag, PowerManager.WakeLock wakeLock, long acquiredAt, long expiresAt, boolean shared) {
+            this.tag = tag;
+            this.wakeLock = wakeLock;
+            this.acquiredAt = acquiredAt;
+            this.expiresAt = expiresAt;
+            this.shared = shared;
+        }
+    }
+
+    static final class TagStats {
+        long acquired = 0;
+        long released = 0;
+        long expired = 0;
+        long heldMs = 0;
+        int active = 0;
+    }
+
+    private static final ConcurrentHashMap<String, Lock> locks = new ConcurrentHashMap<>();
+    private static final Map<String, Lock> sharedLocks = new ConcurrentHashMap<>();
+    private static final Map<String, TagStats> stats = new ConcurrentHashMap<>();
+    private static final AtomicLong keyCounter = new AtomicLong();
+    private static boolean sweepScheduled = false;
+
+    private WakeLockRegistry() {
+    }
+
+    /**
+     * acquire a new wake lock, returns its key
+     */
+    static String acquire(Context context, String tag, long timeout) {
+        PowerManager powerManager = Objects.requireNonNull((PowerManager)context.getSystemService(Context.POWER_SERVICE));
+        PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        wakeLock.setReferenceCounted(false);
+        long now = SystemClock.elapsedRealtime();
+        wakeLock.acquire(timeout);
+        String key = tag + "#" + keyCounter.incrementAndGet();
+        synchronized (WakeLockRegistry.class) {
+            locks.put(key, new Lock(tag, wakeLock, now, now + timeout, false));
+            TagStats tagStats = getTagStats(tag);
+            tagStats.acquired++;
+            tagStats.active++;
+            scheduleSweep();
+        }
+        return key;
+    }
+
+    /**
+     * acquire the shared wake lock for tag, it is held until all keys are
+     * released or the longest timeout passed. returns a new key.
+     */
+    static String acquireShared(Context context, String tag, long timeout) {
+        long now = SystemClock.elapsedRealtime();
+        String key = tag + "#" + keyCounter.incrementAndGet();
+        synchronized (WakeLockRegistry.class) {
+            Lock lock = sharedLocks.get(tag);
+            if (lock != null && lock.wakeLock.isHeld()) {
+                lock.refCount++;
+                if (now + timeout > lock.expiresAt) {
+                    lock.expiresAt = now + timeout;
+                    // not reference counted, this only extends the timeout
+                    lock.wakeLock.acquire(timeout);
+                }
+            } else {
+                PowerManager powerManager = Objects.requireNonNull((PowerManager)context.getSystemService(Context.POWER_SERVICE));
+                PowerManager.WakeLock wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+                wakeLock.setReferenceCounted(false);
+                wakeLock.acquire(timeout);
+                lock = new Lock(tag, wakeLock, now, now + timeout, true);
+                sharedLocks.put(tag, lock);
+                getTagStats(tag).active++;
+            }
+            locks.put(key, lock);
+            getTagStats(tag).acquired++;
+            scheduleSweep();
+        }
+        return key;
+    }
+
+    /**
+     * release the wake lock for key, false if the key is unknown or the
+     * lock already expired.
+     */
+    static boolean release(String key) {
+        Lock lock;
+        boolean expired;
+        synchronized (WakeLockRegistry.class) {
+            lock = locks.remove(key);
+            if (lock == null) return false;
+            long now = SystemClock.elapsedRealtime();
+            // timed out but not swept yet
+            expired = now >= lock.expiresAt || !lock.wakeLock.isHeld();
+            TagStats tagStats = getTagStats(lock.tag);
+            if (expired) {
+                tagStats.expired++;
+            } else {
+                tagStats.released++;
+            }
+            lock.refCount--;
+            if (lock.refCount > 0) return !expired;
+            if (lock.shared) sharedLocks.remove(lock.tag);
+            tagStats.active--;
+            tagStats.heldMs += Math.min(now, lock.expiresAt) - lock.acquiredAt;
+        }
+        if (lock.wakeLock.isHeld()) {
+            lock.wakeLock.release();
+        }
+        return !expired;
+    }
+
+    private static TagStats getTagStats(String tag) {
+        TagStats res = stats.get(tag);
+        if (res == null) {
+            res = new TagStats();
+            stats.put(tag, res);
+        }
+        return res;
+    }
+
+    private static void scheduleSweep() {
+        if (sweepScheduled) return;
+        sweepScheduled = true;
+        EventPipeline.getHandler().postDelayed(WakeLockRegistry::sweep, SWEEP_INTERVAL);
+    }
+
+    /**
+     * remove locks that timed out without being released
+     */
+    static void sweep() {
+        long now = SystemClock.elapsedRealtime();
+        synchronized (WakeLockRegistry.class) {
+            sweepScheduled = false;
+            for (Map.Entry<String, Lock> entry : locks.entrySet()) {
+                Lock lock = entry.getValue();
+                if (now < lock.expiresAt && lock.wakeLock.isHeld()) continue;
+                locks.remove(entry.getKey());
+                TagStats tagStats = getTagStats(lock.tag);
+                tagStats.expired++;
+                lock.refCount--;
+                if (lock.refCount > 0) continue;
+                if (lock.shared) sharedLocks.remove(lock.tag);
+                tagStats.active--;
+                tagStats.heldMs += Math.min(now, lock.expiresAt) - lock.acquiredAt;
+                Log.w("RNMoPushNotification", "wake lock " + entry.getKey() + " expired without release");
+            }
+            if (!locks.isEmpty()) scheduleSweep();
+        }
+    }
+
+    /**
+     * the number of wake locks held, a shared lock counts once
+     */
+    static synchronized int getActiveCount() {
+        int res = 0;
+        for (TagStats tagStats : stats.values()) {
+            res += tagStats.active;
+        }
+        return res;
+    }
+
+    /**
+     * heldMs includes the time held so far of locks that are still active
+     */
+    static synchronized Map<String, TagStats> getStats() {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, TagStats> res = new ConcurrentHashMap<>();
+        for (Map.Entry<String, TagStats> entry : stats.entrySet()) {
+            TagStats copy = new TagStats();
+            copy.acquired = entry.getValue().acquired;
+            copy.released = entry.getValue().released;
+            copy.expired = entry.getValue().expired;
+            copy.heldMs = entry.getValue().heldMs;
+            copy.active = entry.getValue().active;
+            res.put(entry.getKey(), copy);
+        }
+        // the keys of a shared lock all map to it
+        Set<Lock> active = Collections.newSetFromMap(new IdentityHashMap<>());
+        active.addAll(locks.values());
+        for (Lock lock : active) {
+            TagStats copy = res.get(lock.tag);
+            if (copy != null) copy.heldMs += Math.min(now, lock.expiresAt) - lock.acquiredAt;
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,391 @@
+package de.mxs.reactnativemopushnotification;
+
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Looper;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.ReactInstanceEventListener;
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.google.firebase.messaging.RemoteMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * drives the fcm service, the receiver and onNewIntent with bursts of
+ * synthetic messages and clicks on posted notifications, with the react
+ * context up (warm) and still starting (cold). checks order, exactly once
+ * delivery to the emitter and the instance listeners, reports throughput
+ * and allocation per message.
+ *
+ *   ./gradlew test --tests '*BurstLoadTest' -Dburst.count=20000
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+    sdk = 33,
+    application = BurstLoadTest.TestApplication.class,
+    shadows = { ShadowArguments.class },
+    instrumentedPackages = { "com.facebook.react.bridge" }
+)
+public class BurstLoadTest {
+
+    private static final int COUNT = Integer.getInteger("burst.count", 5000);
+    private static final long MAX_BYTES_PER_MESSAGE = 512 * 1024;
+    private static final int MAX_SHOWN = 50;
+
+    public static class TestApplication extends Application implements ReactApplication {
+
+        final ReactNativeHost host = mock(ReactNativeHost.class);
+        final ReactInstanceManager instanceManager = mock(ReactInstanceManager.class);
+
+        public TestApplication() {
+            when(host.getReactInstanceManager()).thenReturn(instanceManager);
+        }
+
+        @Override
+        public ReactNativeHost getReactNativeHost() {
+            return host;
+        }
+    }
+
+    /**
+     * records what reaches js
+     */
+    private static final class Recorder implements DeviceEventManagerModule.RCTDeviceEventEmitter {
+
+        final List<ReadableMap> events = new ArrayList<>();
+
+        @Override
+        public synchronized void emit(String eventName, Object data) {
+            assertEquals("ReactNativeMoPushNotification", eventName);
+            events.add((ReadableMap)data);
+        }
+
+        synchronized List<ReadableMap> getEvents() {
+            return new ArrayList<>(events);
+        }
+    }
+
+    private TestApplication app;
+    private Recorder recorder;
+    private ReactContext reactContext;
+    private final AtomicReference<ReactContext> currentContext = new AtomicReference<>();
+    private final List<ReactInstanceEventListener> listeners = new ArrayList<>();
+    private final AtomicInteger listenersAdded = new AtomicInteger();
+    private final AtomicInteger contextStarts = new AtomicInteger();
+    private final AtomicBoolean contextStarting = new AtomicBoolean();
+    private final AtomicBoolean initializeOnListen = new AtomicBoolean();
+    private String run;
+
+    @Before
+    public void setUp() {
+        app = (TestApplication)RuntimeEnvironment.getApplication();
+        recorder = new Recorder();
+        reactContext = mock(ReactContext.class);
+        when(reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(recorder);
+
+        ReactInstanceManager instanceManager = app.instanceManager;
+        when(instanceManager.getCurrentReactContext()).thenAnswer(inv -> currentContext.get());
+        when(instanceManager.hasStartedCreatingInitialContext()).thenAnswer(inv -> contextStarting.get());
+        doAnswer(inv -> {
+            contextStarts.incrementAndGet();
+            contextStarting.set(true);
+            return null;
+        }).when(instanceManager).createReactContextInBackground();
+        doAnswer(inv -> {
+            // the context finished initializing just before the listener was
+            // added, so the listener is never called
+            if (initializeOnListen.get()) currentContext.set(reactContext);
+            synchronized (listeners) {
+                listeners.add(inv.getArgument(0));
+            }
+            listenersAdded.incrementAndGet();
+            return null;
+        }).when(instanceManager).addReactInstanceEventListener(any());
+        doAnswer(inv -> {
+            synchronized (listeners) {
+                listeners.remove((ReactInstanceEventListener)inv.getArgument(0));
+            }
+            return null;
+        }).when(instanceManager).removeReactInstanceEventListener(any());
+
+        PendingEvents.setConfig(app, COUNT * 2, PendingEvents.OVERFLOW_DROP_OLDEST);
+        // ids must be unique across tests, the deduplicator is process wide
+        run = Long.toString(System.nanoTime(), 36);
+    }
+
+    private static void awaitPipeline() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        EventPipeline.post(latch::countDown);
+        assertTrue("pipeline stalled", latch.await(120, TimeUnit.SECONDS));
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long res = 0;
+        for (long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) res += bytes;
+        }
+        return res;
+    }
+
+    private static void report(String name, int count, long nanos, long bytes) {
+        System.out.printf("%s: %d events in %.1f ms, %.0f events/s, %d bytes/event%n",
+            name, count, nanos / 1e6, count / (nanos / 1e9), bytes / count);
+        assertTrue(name + " allocates " + bytes / count + " bytes/event", bytes / count < MAX_BYTES_PER_MESSAGE);
+    }
+
+    private RemoteMessage createMessage(int seq) {
+        Bundle bundle = new Bundle();
+        bundle.putString("google.message_id", run + ":" + seq);
+        bundle.putLong("google.sent_time", System.currentTimeMillis());
+        bundle.putString("from", "123456789");
+        bundle.putString("seq", String.valueOf(seq));
+        bundle.putString("payload", "{\"items\":[1,2,3],\"text\":\"burst load message " + seq + "\"}");
+        return new RemoteMessage(bundle);
+    }
+
+    /**
+     * events must carry seq 0..count-1, in order, each exactly once
+     */
+    private static void assertInOrder(List<ReadableMap> events, int count, String type) {
+        assertEquals("events delivered", count, events.size());
+        for (int i=0; i<count; i++) {
+            ReadableMap event = events.get(i);
+            assertEquals(type, event.getString("type"));
+            ReadableMap data = event.getMap("data");
+            assertNotNull(data);
+            assertEquals("event " + i, String.valueOf(i), data.getString("seq"));
+        }
+    }
+
+    private ReactNativeMoPushNotificationFirebaseMessagingService createService() {
+        return Robolectric.setupService(ReactNativeMoPushNotificationFirebaseMessagingService.class);
+    }
+
+    @Test
+    public void messagesWarm() throws Exception {
+        currentContext.set(reactContext);
+        ReactNativeMoPushNotificationFirebaseMessagingService service = createService();
+        List<RemoteMessage> messages = new ArrayList<>(COUNT);
+        for (int i=0; i<COUNT; i++) {
+            messages.add(createMessage(i));
+        }
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i=0; i<COUNT; i++) {
+            service.onMessageReceived(messages.get(i));
+            // redelivered by fcm, must be dropped
+            if (i % 10 == 0) service.onMessageReceived(messages.get(i));
+        }
+        awaitPipeline();
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        assertInOrder(recorder.getEvents(), COUNT, "onMessageReceived");
+        assertEquals("no listener while warm", 0, listenersAdded.get());
+        assertEquals(0, contextStarts.get());
+        report("messagesWarm", COUNT, nanos, bytes);
+    }
+
+    @Test
+    public void messagesCold() throws Exception {
+        ReactNativeMoPushNotificationFirebaseMessagingService service = createService();
+        int half = COUNT / 2;
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i=0; i<half; i++) {
+            service.onMessageReceived(createMessage(i));
+        }
+        awaitPipeline();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals("nothing delivered before the context is up", 0, recorder.getEvents().size());
+        assertEquals("queued", half, PendingEvents.getDepth());
+        assertEquals("one listener", 1, listenersAdded.get());
+        assertEquals("context started once", 1, contextStarts.get());
+
+        // the context comes up while the burst goes on
+        currentContext.set(reactContext);
+        List<ReactInstanceEventListener> initialized;
+        synchronized (listeners) {
+            initialized = new ArrayList<>(listeners);
+        }
+        for (ReactInstanceEventListener listener : initialized) {
+            listener.onReactContextInitialized(reactContext);
+        }
+        for (int i=half; i<COUNT; i++) {
+            service.onMessageReceived(createMessage(i));
+        }
+        awaitPipeline();
+        // drain may have been posted behind the burst
+        awaitPipeline();
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        assertInOrder(recorder.getEvents(), COUNT, "onMessageReceived");
+        assertEquals("queue drained", 0, PendingEvents.getDepth());
+        assertEquals("still one listener", 1, listenersAdded.get());
+        synchronized (listeners) {
+            assertEquals("listener removed after drain", 0, listeners.size());
+        }
+        assertEquals("context started once", 1, contextStarts.get());
+        report("messagesCold", COUNT, nanos, bytes);
+    }
+
+    @Test
+    public void messagesColdInitializedWhileListening() throws Exception {
+        initializeOnListen.set(true);
+        ReactNativeMoPushNotificationFirebaseMessagingService service = createService();
+        int half = COUNT / 2;
+
+        service.onMessageReceived(createMessage(0));
+        awaitPipeline();
+        // drain is posted behind the first message
+        awaitPipeline();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals("delivered without the listener being called", 1, recorder.getEvents().size());
+        assertEquals("queue drained", 0, PendingEvents.getDepth());
+        synchronized (listeners) {
+            assertEquals("listener removed after drain", 0, listeners.size());
+        }
+
+        for (int i=1; i<COUNT; i++) {
+            service.onMessageReceived(createMessage(i));
+            if (i == half) awaitPipeline();
+        }
+        awaitPipeline();
+
+        assertInOrder(recorder.getEvents(), COUNT, "onMessageReceived");
+        assertEquals("queue drained", 0, PendingEvents.getDepth());
+        assertEquals("one listener", 1, listenersAdded.get());
+    }
+
+    @Test
+    public void clicksWarm() throws Exception {
+        currentContext.set(reactContext);
+        ReactNativeMoPushNotificationReceiver receiver = new ReactNativeMoPushNotificationReceiver();
+        NotificationManager notificationManager = Objects.requireNonNull((NotificationManager)app.getSystemService(Context.NOTIFICATION_SERVICE));
+        NotificationPoster poster = new NotificationPoster(app);
+        List<Integer> ids = new ArrayList<>(COUNT);
+        long nanos = 0;
+        long bytes = 0;
+
+        // posted and clicked in rounds, android shows at most
+        // MAX_SHOWN notifications of an app at once
+        for (int round=0; round<COUNT; round+=MAX_SHOWN) {
+            List<Intent> intents = new ArrayList<>(MAX_SHOWN);
+            for (int i=round; i<Math.min(round + MAX_SHOWN, COUNT); i++) {
+                JavaOnlyMap data = new JavaOnlyMap();
+                data.putString("seq", String.valueOf(i));
+                JavaOnlyMap args = new JavaOnlyMap();
+                args.putString("title", "title " + i);
+                args.putString("body", "burst load notification " + i);
+                args.putBoolean("background", true);
+                args.putMap("data", data);
+                int id = poster.post(args);
+                ids.add(id);
+                // the click intent only carries the id, the payload is in PayloadStore
+                PendingIntent contentIntent = shadowOf(notificationManager).getNotification(id).contentIntent;
+                intents.add(shadowOf(contentIntent).getSavedIntent());
+            }
+            awaitPipeline();
+
+            long roundBytes = allocatedBytes();
+            long roundStart = System.nanoTime();
+            for (Intent intent : intents) {
+                receiver.onReceive(app, intent);
+            }
+            awaitPipeline();
+            nanos += System.nanoTime() - roundStart;
+            bytes += allocatedBytes() - roundBytes;
+
+            // autoCancel
+            for (int i=round; i<Math.min(round + MAX_SHOWN, COUNT); i++) {
+                notificationManager.cancel(ids.get(i));
+            }
+        }
+
+        List<ReadableMap> events = recorder.getEvents();
+        assertInOrder(events, COUNT, "onNotificationClicked");
+        for (int i=0; i<COUNT; i++) {
+            ReadableMap event = events.get(i);
+            assertEquals((int)ids.get(i), event.getInt("id"));
+            assertEquals("title " + i, event.getString("title"));
+            assertEquals("burst load notification " + i, event.getString("body"));
+            assertTrue(event.hasKey("channelID"));
+            assertEquals(Notification.COLOR_DEFAULT, event.getInt("color"));
+        }
+        report("clicksWarm", COUNT, nanos, bytes);
+    }
+
+    @Test
+    public void intents() throws Exception {
+        ReactApplicationContext moduleContext = spy(new ReactApplicationContext(app));
+        doReturn(recorder).when(moduleContext).getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        ReactNativeMoPushNotification module = new ReactNativeMoPushNotification(moduleContext);
+        List<Intent> intents = new ArrayList<>(COUNT);
+        for (int i=0; i<COUNT; i++) {
+            Intent intent = new Intent(Intent.ACTION_MAIN);
+            intent.putExtra("google.message_id", run + ":intent:" + i);
+            intent.putExtra("from", "123456789");
+            intent.putExtra("seq", String.valueOf(i));
+            intents.add(intent);
+        }
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (Intent intent : intents) {
+            module.onNewIntent(intent);
+            // the same intent is seen again when the module is recreated
+            module.onNewIntent(intent);
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        assertInOrder(recorder.getEvents(), COUNT, "onNotificationIntent");
+        report("intents", COUNT, nanos, bytes);
+    }
+
+}
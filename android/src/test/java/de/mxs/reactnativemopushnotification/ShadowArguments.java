@@ -0,0 +1,29 @@
+package de.mxs.reactnativemopushnotification;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * the real Arguments create native maps, which need the react native
+ * libraries. use the java only ones instead, on every thread.
+ */
+@Implements(Arguments.class)
+public class ShadowArguments {
+
+    @Implementation
+    public static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    @Implementation
+    public static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+
+}
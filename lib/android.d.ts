@@ -25,7 +25,13 @@ export interface Channel {
     lockscreenVisibility: Visibility;
     lightColor: number;
     bypassDnd: boolean;
-    sound: string;
+    sound: string | null;
+}
+export interface ChannelChanges {
+    created: string[];
+    updated: string[];
+    deleted: string[];
+    unchanged: string[];
 }
 export interface Notification {
     channelID?: string;
@@ -40,6 +46,12 @@ export interface Notification {
     ticker?: string;
     subtext?: string;
     ongoing?: boolean;
+    /** null removes the progress bar */
+    progress?: {
+        max?: number;
+        current?: number;
+        indeterminate?: boolean;
+    } | null;
     lights?: {
         color: number;
         on: number;
@@ -47,7 +59,21 @@ export interface Notification {
     };
     sound?: string;
     groupKey?: string;
+    /** post as the summary of groupKey, see setGroupSummaryOptions for native summaries */
+    groupSummary?: boolean;
+    /** InboxStyle lines, with an optional summaryText */
+    lines?: string[];
+    summaryText?: string;
     smallIcon?: string;
+    /**
+     * a file path, file:// or content:// uri, or a drawable / mipmap name.
+     * decoded natively, downsampled and cached.
+     */
+    largeIcon?: string;
+    /** as largeIcon, shown as BigPictureStyle (not together with lines) */
+    bigPicture?: string;
+    /** receivedAt of the message this is shown for, for the notify latency */
+    receivedAt?: number;
     autoCancel?: boolean;
     fullScreen?: boolean;
     turnScreenOn?: boolean;
@@ -65,8 +91,9 @@ export interface Notification {
         showsUserInterface?: boolean;
         background?: boolean;
     })[];
+    /** nested objects and arrays are passed on to the click event */
     data?: {
-        [k: string]: string | number | boolean;
+        [k: string]: any;
     };
 }
 export interface ExistingNotification {
@@ -81,7 +108,76 @@ export interface ExistingNotification {
     channelID?: string;
     data: any;
 }
+export interface ScheduledNotification {
+    id: number;
+    /** ms since epoch */
+    time: number;
+    args: Notification;
+}
+export interface PendingEventsStats {
+    depth: number;
+    maxDepth: number;
+    enqueued: number;
+    delivered: number;
+    dropped: number;
+    limit: number;
+    overflow: 'dropOldest' | 'dropNewest';
+}
+export interface WakeLockStats {
+    active: number;
+    expired: number;
+    tags: {
+        [tag: string]: {
+            acquired: number;
+            released: number;
+            expired: number;
+            heldMs: number;
+            active: number;
+        };
+    };
+}
+/**
+ * a message is not shown if all conditions of a rule hold, rules without
+ * conditions are ignored
+ */
+export interface SuppressionRule {
+    /** reported as suppressedBy, defaults to the index */
+    id?: string;
+    /** data fields that must be equal */
+    data?: {
+        [k: string]: string;
+    };
+    /** the template channel, notification channel, data.channelID or the default channel */
+    channelID?: string;
+    /** only while the app is in the foreground */
+    foreground?: boolean;
+}
+export interface StageMetrics {
+    count: number;
+    mean: number;
+    p50: number;
+    p90: number;
+    p99: number;
+    max: number;
+}
+/** latencies in ms, see LatencyMetrics.java for the stages */
+export interface Metrics {
+    transit: StageMetrics;
+    handoff: StageMetrics;
+    contextWarm: StageMetrics;
+    contextCold: StageMetrics;
+    convert: StageMetrics;
+    emit: StageMetrics;
+    endToEnd: StageMetrics;
+    notify: StageMetrics;
+}
 export interface Module {
+    /** constants, the static part of getSystemInfo */
+    readonly packageName: string;
+    readonly locale: string;
+    readonly launchIntent?: string;
+    /** the cached result of getFirebaseInstanceId, null until it was fetched once or when it is about to expire */
+    readonly firebaseInstanceId: string | null;
     setVerbose(verbose: boolean): void;
     setShortcutBadger(value: number): void;
     getFirebaseInstanceId(): Promise<string>;
@@ -90,18 +186,109 @@ export interface Module {
         packageName: string;
         launchIntent?: string;
     }>;
+    preloadResources(names: string[]): Promise<string[]>;
     createNotificationChannel(channel: Partial<Channel>): void;
+    setNotificationChannels(channels: (Partial<Channel> & {
+        id: string;
+    })[], options: {
+        deleteOthers?: boolean;
+    }): Promise<ChannelChanges>;
     deleteNotificationChannel(id: string): void;
+    getChannelRegistryStats(): Promise<{
+        hits: number;
+        misses: number;
+        channels: number;
+    }>;
     openNotificationSettings(): void;
     openNotificationChannelSettings(id: string): void;
     getNotificationChannels(): Promise<Channel[]>;
     cancelNotification(id: number): void;
     getNotifications(): Promise<ExistingNotification[] | undefined>;
     showNotification(args: Notification): Promise<number>;
+    /**
+     * merge partial into a posted notification. title, body, subtext, ticker,
+     * number, ongoing and progress are applied to the last builder, other
+     * fields rebuild it. updates are rate limited, waiting updates of the
+     * same id are merged (counted as skipped).
+     */
+    updateNotification(id: number, partial: Partial<Notification>): void;
+    /** posts per second, default 5, 0 for no limit */
+    setUpdateRateLimit(postsPerSecond: number): void;
+    getUpdateStats(): Promise<{
+        posted: number;
+        skipped: number;
+        pending: number;
+    }>;
+    /**
+     * maintain a summary per groupKey natively, with the count and the last
+     * maxLines (default 5) lines. with collapseThreshold (default 0, never)
+     * the notifications of a group are replaced by the summary once there are
+     * that many. summaryText may use {{count}}.
+     */
+    setGroupSummaryOptions(args: {
+        enabled?: boolean;
+        maxLines?: number;
+        collapseThreshold?: number;
+        summaryText?: string;
+    }): void;
+    /**
+     * templates by name, a data message with a "template" field is shown
+     * natively without starting js. "{{key}}" in strings is replaced with
+     * data[key].
+     */
+    setNotificationTemplates(templates: {
+        [name: string]: Notification;
+    }): void;
+    /** replaces all rules, persisted */
+    setSuppressionRules(rules: SuppressionRule[]): Promise<boolean>;
+    /** start js after a reboot, native state is restored without it */
+    setStartOnBoot(value: boolean): Promise<void>;
+    /** posted natively at time (ms since epoch), resolves with the notification id */
+    scheduleNotification(args: Notification, time: number): Promise<number>;
+    cancelScheduled(id: number): Promise<boolean>;
+    getScheduled(): Promise<ScheduledNotification[]>;
+    showNotifications(list: Notification[]): Promise<({
+        id: number;
+    } | {
+        error: string;
+    })[]>;
+    setPendingEventsConfig(args: {
+        limit?: number;
+        overflow?: 'dropOldest' | 'dropNewest';
+    }): void;
+    getPendingEventsStats(): Promise<PendingEventsStats>;
+    setEventBatching(args: {
+        enabled: boolean;
+        windowMs?: number;
+        maxBatchSize?: number;
+    }): void;
+    getMetrics(): Promise<Metrics>;
+    resetMetrics(): void;
+    setMetricsInterval(intervalMs: number): void;
+    setDataJsonMode(args: {
+        all?: boolean;
+        keys?: string[];
+    }): void;
+    /**
+     * collapseKey also drops redelivery of a message under a new id (same
+     * collapse key and sent time). newer messages are never dropped.
+     */
+    setDeduplicationOptions(args: {
+        collapseKey?: boolean;
+    }): void;
+    getDeduplicationStats(): Promise<{
+        suppressed: number;
+        size: number;
+    }>;
+    setJournalEnabled(value: boolean): void;
+    acknowledgeEvent(journalSeq: number): void;
+    drainPendingEvents(): Promise<Event[]>;
     acquireWakeLock(tag: string, timeout: number): Promise<string>;
-    releaseWakeLock(key: string): Promise<void>;
+    acquireSharedWakeLock(tag: string, timeout: number): Promise<string>;
+    releaseWakeLock(key: string): Promise<boolean>;
+    getWakeLockStats(): Promise<WakeLockStats>;
 }
-export type Event = {
+export type Event = ({
     type: 'onMessageReceived';
     from: string | null;
     to: string | null;
@@ -115,6 +302,15 @@ export type Event = {
     data: {
         [k: string]: string;
     };
+    /** see setDataJsonMode, merged into data by PushNotification */
+    dataJson?: string;
+    /** set if the message was shown natively from a template */
+    notificationID?: number;
+    /** set if a suppression rule matched, the message must not be shown */
+    suppressed?: boolean;
+    suppressedBy?: string;
+    /** elapsedRealtime of the receipt, pass as receivedAt when showing it */
+    receivedAt?: number;
     title?: string | null;
     body?: string | null;
     sound?: string | null;
@@ -132,16 +328,30 @@ export type Event = {
     color?: number;
     channelID?: string;
     data?: any;
+    dataJson?: string;
 } | {
     type: 'onNotificationIntent';
     from: string | null;
     collapseKey?: string | null;
     messageId: string;
     data: {
-        [k: string]: string;
+        [k: string]: any;
     };
+    dataJson?: string;
+} | {
+    type: 'onMetrics';
+    metrics: Metrics;
+} | {
+    type: 'onTokenChanged';
+    token: string;
+}) & {
+    /** set if the event was journaled, acknowledge it once handled */
+    journalSeq?: number;
+    /** set if the event comes from drainPendingEvents */
+    replayed?: boolean;
 };
 export declare const Module: Module | undefined;
 export declare const Events: {
     addListener(eventType: "ReactNativeMoPushNotification", listener: (event: Event) => void): EmitterSubscription;
+    addListener(eventType: "ReactNativeMoPushNotificationBatch", listener: (events: Event[]) => void): EmitterSubscription;
 } | undefined;
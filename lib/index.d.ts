@@ -60,6 +60,11 @@ export declare class PushNotification {
         action: string;
     }>;
     private static onInteractionEmit?;
+    /**
+     * called when the token changed after it was requested (android only)
+     */
+    static readonly onTokenChanged: Event<PushNotificationToken>;
+    private static onTokenChangedEmit?;
     /**
      * the last interaction that happened. can be used to check the initial
      * interaction that opened the app
@@ -116,13 +121,33 @@ export declare class PushNotification {
      */
     static iosSetupCategories(categories: ios.Category[]): Promise<void>;
     /**
-     * setup android push channels
+     * setup android push channels. only channels that changed are written,
+     * deleteOthers removes all channels that are not in the list.
      */
     static androidSetupChannels(channels: (Partial<android.Channel> & {
         id: string;
-    })[]): Promise<void>;
+    })[], options?: {
+        deleteOthers?: boolean;
+    }): Promise<android.ChannelChanges | undefined>;
     private static setupEventsDone;
     static setupEvents(): void;
+    /**
+     * sets data of an android event on target. with setDataJsonMode the
+     * dataJson part is parsed on first access of data.
+     */
+    private static withAndroidData;
+    private static handleAndroidEvent;
+    /**
+     * a journaled event is acknowledged once its handlers are done
+     */
+    private static acknowledgeAndroidEvent;
+    /**
+     * android: deliver events that were received but never handled by js,
+     * i.e. because the app was killed before it was started. requires
+     * android.Module.setJournalEnabled(true). call this after subscribing to
+     * onNotification / onInteraction.
+     */
+    static replayPendingEvents(): Promise<void>;
     /**
      * get the active notifications from the notification center
      */
@@ -137,4 +162,11 @@ export declare class PushNotification {
      * show a notification
      */
     static showNotification(args: PushNotificationNotification): Promise<string | undefined>;
+    /**
+     * show multiple notifications. on android they are posted with a single
+     * native call. the result has one entry per notification, undefined if it
+     * was not shown.
+     */
+    static showNotifications(list: PushNotificationNotification[]): Promise<(string | undefined)[]>;
+    private static androidNotificationArgs;
 }
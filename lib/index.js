@@ -38,6 +38,16 @@ export class PushNotification {
         };
     });
     static onInteractionEmit;
+    /**
+     * called when the token changed after it was requested (android only)
+     */
+    static onTokenChanged = new Event((emit) => {
+        PushNotification.onTokenChangedEmit = emit;
+        return () => {
+            PushNotification.onTokenChangedEmit = undefined;
+        };
+    });
+    static onTokenChangedEmit;
     /**
      * the last interaction that happened. can be used to check the initial
      * interaction that opened the app
@@ -196,13 +206,13 @@ export class PushNotification {
                 if (await this.requestPermission() !== 'granted') {
                     throw new Error('ReactNativeMoPushNotification.requestToken: permissions not granted');
                 }
-                const token = await android.Module.getFirebaseInstanceId();
-                const info = await android.Module.getSystemInfo();
+                // the cached token is refreshed natively, see onTokenChanged
+                const token = android.Module.firebaseInstanceId || await android.Module.getFirebaseInstanceId();
                 this.currentToken = {
                     token: token,
                     type: 'android-fcm',
-                    id: info.packageName,
-                    locale: info.locale,
+                    id: android.Module.packageName,
+                    locale: android.Module.locale,
                 };
             }
             return this.currentToken;
@@ -228,14 +238,14 @@ export class PushNotification {
         }
     }
     /**
-     * setup android push channels
+     * setup android push channels. only channels that changed are written,
+     * deleteOthers removes all channels that are not in the list.
      */
-    static async androidSetupChannels(channels) {
+    static async androidSetupChannels(channels, options = {}) {
         if (android.Module) {
-            for (const channel of channels) {
-                android.Module.createNotificationChannel(channel);
-            }
+            return await android.Module.setNotificationChannels(channels, options);
         }
+        return undefined;
     }
     static setupEventsDone = false;
     static setupEvents() {
@@ -324,52 +334,128 @@ export class PushNotification {
         }
         else if (android.Module) {
             android.Events.addListener('ReactNativeMoPushNotification', (rs) => {
-                if (this.verbose)
-                    console.log('ReactNativeMoPushNotification event', rs);
-                if (rs.type === 'onMessageReceived') {
-                    const notification = {
-                        id: rs.messageId,
-                        date: rs.sentTime, // * 1000 ?
-                        data: rs.data,
-                        title: rs.title || undefined,
-                        body: rs.body || undefined,
-                    };
-                    if (this.onNotificationEmit) {
-                        this.onNotificationEmit(notification);
-                    }
-                    this.runInBackground(async () => {
-                        if (rs.title || rs.body) {
-                            await this.showNotification(notification);
-                        }
-                        await this.onFetchData(notification);
-                    });
+                this.handleAndroidEvent(rs);
+            });
+            android.Events.addListener('ReactNativeMoPushNotificationBatch', (events) => {
+                for (const rs of events) {
+                    this.handleAndroidEvent(rs);
                 }
-                else if (rs.type === 'onNotificationClicked') {
-                    if (this.onInteractionEmit) {
-                        this.onInteractionEmit({
-                            id: String(rs.id),
-                            channelID: rs.channelID || undefined,
-                            title: rs.title || undefined,
-                            subtitle: rs.subtext || undefined,
-                            body: rs.body || undefined,
-                            badge: rs.number,
-                            color: rs.color,
-                            data: rs.data,
-                            action: rs.action || 'default',
-                        });
+            });
+        }
+    }
+    /**
+     * sets data of an android event on target. with setDataJsonMode the
+     * dataJson part is parsed on first access of data.
+     */
+    static withAndroidData(target, rs) {
+        if (rs.dataJson === undefined) {
+            return Object.assign(target, { data: rs.data });
+        }
+        let data;
+        return Object.defineProperty(target, 'data', {
+            enumerable: true,
+            configurable: true,
+            get: () => {
+                if (data === undefined) {
+                    data = { ...rs.data };
+                    try {
+                        Object.assign(data, JSON.parse(rs.dataJson));
+                    }
+                    catch (e) {
+                        console.warn('ReactNativeMoPushNotification: cannot parse dataJson', e);
                     }
                 }
-                else if (rs.type === 'onNotificationIntent') {
-                    if (this.onInteractionEmit) {
-                        this.onInteractionEmit({
-                            id: rs.messageId,
-                            data: rs.data,
-                            action: 'default',
+                return data;
+            },
+            set: (value) => {
+                data = value;
+            },
+        });
+    }
+    static handleAndroidEvent(rs) {
+        if (this.verbose)
+            console.log('ReactNativeMoPushNotification event', rs);
+        if (rs.type === 'onMessageReceived') {
+            const notification = this.withAndroidData({
+                id: rs.messageId,
+                date: rs.sentTime, // * 1000 ?
+                title: rs.title || undefined,
+                body: rs.body || undefined,
+            }, rs);
+            if (this.onNotificationEmit) {
+                this.onNotificationEmit(notification);
+            }
+            this.runInBackground(async () => {
+                try {
+                    // already shown from a template or suppressed by a rule otherwise
+                    if ((rs.title || rs.body) && rs.notificationID === undefined && !rs.suppressed) {
+                        await this.showNotification({
+                            ...notification,
+                            android: { ...notification.android, receivedAt: rs.receivedAt },
                         });
                     }
+                    await this.onFetchData(notification);
+                }
+                finally {
+                    // replayed if the process dies before this is done
+                    this.acknowledgeAndroidEvent(rs);
                 }
             });
         }
+        else if (rs.type === 'onNotificationClicked') {
+            if (this.onInteractionEmit) {
+                this.onInteractionEmit(this.withAndroidData({
+                    id: String(rs.id),
+                    channelID: rs.channelID || undefined,
+                    title: rs.title || undefined,
+                    subtitle: rs.subtext || undefined,
+                    body: rs.body || undefined,
+                    badge: rs.number,
+                    color: rs.color,
+                    action: rs.action || 'default',
+                }, rs));
+            }
+            this.acknowledgeAndroidEvent(rs);
+        }
+        else if (rs.type === 'onTokenChanged') {
+            if (this.currentToken && this.currentToken.token !== rs.token) {
+                this.currentToken = { ...this.currentToken, token: rs.token };
+                if (this.onTokenChangedEmit) {
+                    this.onTokenChangedEmit(this.currentToken);
+                }
+            }
+            this.acknowledgeAndroidEvent(rs);
+        }
+        else if (rs.type === 'onNotificationIntent') {
+            if (this.onInteractionEmit) {
+                this.onInteractionEmit(this.withAndroidData({
+                    id: rs.messageId,
+                    action: 'default',
+                }, rs));
+            }
+            this.acknowledgeAndroidEvent(rs);
+        }
+    }
+    /**
+     * a journaled event is acknowledged once its handlers are done
+     */
+    static acknowledgeAndroidEvent(rs) {
+        if (rs.journalSeq !== undefined) {
+            android.Module.acknowledgeEvent(rs.journalSeq);
+        }
+    }
+    /**
+     * android: deliver events that were received but never handled by js,
+     * i.e. because the app was killed before it was started. requires
+     * android.Module.setJournalEnabled(true). call this after subscribing to
+     * onNotification / onInteraction.
+     */
+    static async replayPendingEvents() {
+        if (android.Module) {
+            for (const rs of await android.Module.drainPendingEvents()) {
+                this.handleAndroidEvent(rs);
+            }
+        }
     }
     /**
      * get the active notifications from the notification center
@@ -452,25 +538,63 @@ export class PushNotification {
             const res = await this.onShowNotification(args);
             if (!res)
                 return undefined;
-            const id = await android.Module.showNotification({
-                channelID: args.channelID,
-                body: args.body,
-                title: args.title,
-                subtext: args.subtitle,
-                smallIcon: args.icon,
-                sound: args.sound,
-                ongoing: args.ongoing,
-                autoCancel: !args.ongoing,
-                number: args.badge,
-                groupKey: args.threadID,
-                data: args.data,
-                ...(args.android || {}),
-            });
+            const id = await android.Module.showNotification(this.androidNotificationArgs(args));
             this.androidKnownNotifications[id] = args;
             return String(id);
         }
         return undefined;
     }
+    /**
+     * show multiple notifications. on android they are posted with a single
+     * native call. the result has one entry per notification, undefined if it
+     * was not shown.
+     */
+    static async showNotifications(list) {
+        if (android.Module) {
+            const shown = [];
+            const result = [];
+            const index = [];
+            for (const args of list) {
+                result.push(undefined);
+                if (await this.onShowNotification(args)) {
+                    index.push(result.length - 1);
+                    shown.push(args);
+                }
+            }
+            const res = await android.Module.showNotifications(shown.map((args) => this.androidNotificationArgs(args)));
+            res.forEach((rs, i) => {
+                if ('id' in rs) {
+                    this.androidKnownNotifications[rs.id] = shown[i];
+                    result[index[i]] = String(rs.id);
+                }
+                else if (this.verbose) {
+                    console.log('ReactNativeMoPushNotification showNotifications failed', rs.error);
+                }
+            });
+            return result;
+        }
+        const result = [];
+        for (const args of list) {
+            result.push(await this.showNotification(args));
+        }
+        return result;
+    }
+    static androidNotificationArgs(args) {
+        return {
+            channelID: args.channelID,
+            body: args.body,
+            title: args.title,
+            subtext: args.subtitle,
+            smallIcon: args.icon,
+            sound: args.sound,
+            ongoing: args.ongoing,
+            autoCancel: !args.ongoing,
+            number: args.badge,
+            groupKey: args.threadID,
+            data: args.data,
+            ...(args.android || {}),
+        };
+    }
 }
 PushNotification.setupEvents();
 //# sourceMappingURL=index.js.map
\ No newline at end of file